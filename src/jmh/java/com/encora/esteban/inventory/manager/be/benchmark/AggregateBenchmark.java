@@ -0,0 +1,41 @@
+package com.encora.esteban.inventory.manager.be.benchmark;
+
+import com.encora.esteban.inventory.manager.be.store.InventoryTotals;
+import com.encora.esteban.inventory.manager.be.store.ProductStore;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading the running inventory totals versus recomputing them from every product,
+ * which is what each listing request used to do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AggregateBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    int catalogSize;
+
+    private ProductStore store;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        store = new ProductStore();
+        Catalogs.generate(catalogSize, store::add);
+    }
+
+    @Benchmark
+    public InventoryTotals runningTotals() {
+        return store.totals();
+    }
+
+    @Benchmark
+    public InventoryTotals fullRecompute() {
+        return InventoryTotals.recompute(store.all());
+    }
+}
@@ -0,0 +1,39 @@
+package com.encora.esteban.inventory.manager.be.benchmark;
+
+import com.encora.esteban.inventory.manager.be.model.Product;
+
+import java.time.LocalDate;
+import java.util.Random;
+import java.util.function.Consumer;
+
+/**
+ * Deterministic synthetic catalogs, so every run of a benchmark measures the same data.
+ */
+final class Catalogs {
+
+    static final String[] CATEGORIES = {"Electronics", "Clothing", "Food", "Toys", "Garden", "Books", "Sports", "Office"};
+    private static final String[] ADJECTIVES = {"Wireless", "Classic", "Organic", "Compact", "Deluxe", "Portable", "Smart", "Vintage"};
+    private static final String[] NOUNS = {"Mouse", "Jacket", "Pasta", "Lamp", "Speaker", "Notebook", "Ball", "Chair", "Kettle", "Socks"};
+    private static final LocalDate TODAY = LocalDate.of(2026, 1, 1);
+
+    static final long SEED = 20260101L;
+
+    private Catalogs() {
+    }
+
+    // Feeds {@code size} products to the sink; the same size always yields the same products
+    static void generate(int size, Consumer<Product> sink) {
+        Random random = new Random(SEED);
+        for (int i = 0; i < size; i++) {
+            sink.accept(product(random, i));
+        }
+    }
+
+    static Product product(Random random, int serial) {
+        String category = CATEGORIES[random.nextInt(CATEGORIES.length)];
+        String name = ADJECTIVES[random.nextInt(ADJECTIVES.length)] + " " + NOUNS[random.nextInt(NOUNS.length)] + " " + serial;
+        LocalDate expiration = "Food".equals(category) ? TODAY.plusDays(random.nextInt(365)) : null;
+        int stock = random.nextInt(10) == 0 ? 0 : random.nextInt(50) + 1;
+        return new Product(null, name, category, 1 + random.nextInt(50_000) / 100.0, expiration, stock, TODAY, TODAY);
+    }
+}
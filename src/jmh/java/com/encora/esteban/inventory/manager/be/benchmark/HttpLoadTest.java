@@ -0,0 +1,118 @@
+package com.encora.esteban.inventory.manager.be.benchmark;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closed-loop HTTP load against a running instance, for comparing the request-thread modes
+ * (e.g. {@code spring.threads.virtual.enabled}) end to end. Each client sends its next request
+ * as soon as the previous one is answered: a listing, or with probability {@code writes} a new
+ * product, which with persistence enabled waits for the change log's fsync.
+ *
+ * Not a JMH benchmark; run it against a started instance:
+ * {@code ./mvnw -Pjmh test-compile exec:exec -Djmh.main=com.encora.esteban.inventory.manager.be.benchmark.HttpLoadTest
+ * -Djmh.args="url=http://localhost:9090 clients=400 seconds=30 writes=0.5"}
+ */
+public final class HttpLoadTest {
+
+    private static final String PRODUCT = "{\"name\":\"Load %d\",\"category\":\"Load\",\"unitPrice\":1.5,\"quantityInStock\":%d}";
+
+    private HttpLoadTest() {
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        Map<String, String> options = new HashMap<>(Map.of(
+                "url", "http://localhost:9090", "clients", "200", "seconds", "30", "warmup", "10", "writes", "0.5"));
+        for (String arg : args) {
+            String[] option = arg.split("=", 2);
+            options.put(option[0], option[1]);
+        }
+        String url = options.get("url") + "/inventory/products";
+        int clients = Integer.parseInt(options.get("clients"));
+        long warmupNanos = Duration.ofSeconds(Long.parseLong(options.get("warmup"))).toNanos();
+        long measureNanos = Duration.ofSeconds(Long.parseLong(options.get("seconds"))).toNanos();
+        double writes = Double.parseDouble(options.get("writes"));
+
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        long start = System.nanoTime();
+        long measureFrom = start + warmupNanos;
+        long end = measureFrom + measureNanos;
+        AtomicLong errors = new AtomicLong();
+        List<long[]> latencies = new ArrayList<>();
+        int[] counts = new int[clients];
+        CountDownLatch done = new CountDownLatch(clients);
+
+        for (int c = 0; c < clients; c++) {
+            long[] own = new long[1 << 16];
+            latencies.add(own);
+            int index = c;
+            Thread thread = new Thread(() -> {
+                long[] samples = own;
+                int count = 0;
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    for (long now = System.nanoTime(); now < end; now = System.nanoTime()) {
+                        HttpRequest request = random.nextDouble() < writes
+                                ? HttpRequest.newBuilder(URI.create(url))
+                                        .header("Content-Type", "application/json")
+                                        .POST(HttpRequest.BodyPublishers.ofString(
+                                                PRODUCT.formatted(random.nextInt(1_000_000), random.nextInt(100))))
+                                        .build()
+                                : HttpRequest.newBuilder(URI.create(url + "?page=" + random.nextInt(10) + "&size=10"))
+                                        .GET().build();
+                        try {
+                            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                            if (response.statusCode() >= 400) {
+                                errors.incrementAndGet();
+                            }
+                        } catch (Exception e) {
+                            errors.incrementAndGet();
+                        }
+                        long finished = System.nanoTime();
+                        if (now >= measureFrom && finished <= end) {
+                            if (count == samples.length) {
+                                samples = Arrays.copyOf(samples, count * 2);
+                                latencies.set(index, samples);
+                            }
+                            samples[count++] = finished - now;
+                        }
+                    }
+                } finally {
+                    counts[index] = count;
+                    done.countDown();
+                }
+            }, "load-client-" + c);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        done.await();
+
+        int total = Arrays.stream(counts).sum();
+        long[] all = new long[total];
+        int offset = 0;
+        for (int c = 0; c < clients; c++) {
+            System.arraycopy(latencies.get(c), 0, all, offset, counts[c]);
+            offset += counts[c];
+        }
+        Arrays.sort(all);
+        System.out.printf("clients=%d writes=%.2f requests=%d errors=%d throughput=%.0f req/s "
+                        + "p50=%.2f ms p99=%.2f ms max=%.2f ms%n",
+                clients, writes, total, errors.get(), total / (measureNanos / 1e9),
+                percentile(all, 0.50), percentile(all, 0.99), total == 0 ? 0 : all[total - 1] / 1e6);
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        return sorted.length == 0 ? 0 : sorted[(int) Math.min(sorted.length - 1, (long) (p * sorted.length))] / 1e6;
+    }
+}
@@ -0,0 +1,57 @@
+package com.encora.esteban.inventory.manager.be.benchmark;
+
+import com.encora.esteban.inventory.manager.be.model.Product;
+import com.encora.esteban.inventory.manager.be.service.ProductService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Readers listing pages while writers update products on the same catalog: three listing
+ * threads per writer thread. JMH reports each side's throughput separately.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MixedWorkloadBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    int catalogSize;
+
+    private ProductService service;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        service = new ProductService();
+        Catalogs.generate(catalogSize, service::addProduct);
+    }
+
+    @State(Scope.Thread)
+    public static class Writer {
+        final Random random = new Random(Catalogs.SEED);
+        int serial;
+    }
+
+    @Benchmark
+    @Group("listAndUpdate")
+    @GroupThreads(3)
+    public Map<String, Object> list() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String category = random.nextBoolean() ? Catalogs.CATEGORIES[random.nextInt(Catalogs.CATEGORIES.length)] : null;
+        return service.getProducts(null, category, null, random.nextInt(5), 10, "price", "asc");
+    }
+
+    @Benchmark
+    @Group("listAndUpdate")
+    @GroupThreads(1)
+    public boolean update(Writer writer) {
+        Product next = Catalogs.product(writer.random, writer.serial++);
+        return service.updateProduct(1 + ThreadLocalRandom.current().nextLong(catalogSize), next);
+    }
+}
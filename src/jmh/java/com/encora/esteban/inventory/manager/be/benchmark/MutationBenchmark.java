@@ -0,0 +1,71 @@
+package com.encora.esteban.inventory.manager.be.benchmark;
+
+import com.encora.esteban.inventory.manager.be.model.Product;
+import com.encora.esteban.inventory.manager.be.service.ProductService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of single-product writes, including all index and aggregate maintenance,
+ * as the catalog grows and as writer threads are added.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MutationBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    int catalogSize;
+
+    private ProductService service;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        service = new ProductService();
+        Catalogs.generate(catalogSize, service::addProduct);
+    }
+
+    @State(Scope.Thread)
+    public static class Writer {
+        final Random random = new Random(Catalogs.SEED);
+        int serial;
+
+        Product next() {
+            return Catalogs.product(random, serial++);
+        }
+    }
+
+    @Benchmark
+    public boolean updateProduct(Writer writer) {
+        return service.updateProduct(randomId(), writer.next());
+    }
+
+    @Benchmark
+    public boolean markOutOfStockAndRestore() {
+        long id = randomId();
+        return service.markProductOutOfStock(id) & service.restoreProductStock(id);
+    }
+
+    // Adds a product and deletes it again, so the catalog size stays constant across iterations
+    @Benchmark
+    public boolean addThenDelete(Writer writer) {
+        Product added = service.addProduct(writer.next());
+        return service.deleteProductById(added.getId());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean updateProduct4Threads(Writer writer) {
+        return service.updateProduct(randomId(), writer.next());
+    }
+
+    private long randomId() {
+        return 1 + ThreadLocalRandom.current().nextLong(catalogSize);
+    }
+}
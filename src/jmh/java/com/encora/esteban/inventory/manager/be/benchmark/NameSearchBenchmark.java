@@ -0,0 +1,54 @@
+package com.encora.esteban.inventory.manager.be.benchmark;
+
+import com.encora.esteban.inventory.manager.be.model.Product;
+import com.encora.esteban.inventory.manager.be.store.ProductQuery;
+import com.encora.esteban.inventory.manager.be.store.ProductStore;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Substring name search through the trigram index versus the linear lower-case/contains scan
+ * the name filter used before the index existed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NameSearchBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    int catalogSize;
+
+    // A common word, a rare serial-number fragment and a word that occurs nowhere
+    @Param({"lamp", "12345", "zebra"})
+    String name;
+
+    private ProductStore store;
+    private ProductQuery query;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        store = new ProductStore();
+        Catalogs.generate(catalogSize, store::add);
+        query = ProductQuery.builder().name(name).build();
+    }
+
+    @Benchmark
+    public int trigramIndex() {
+        return store.query(query, 0, 10).getTotalProducts();
+    }
+
+    @Benchmark
+    public int linearScan() {
+        int matches = 0;
+        for (Product product : store.all()) {
+            if (product.getName().toLowerCase().contains(name.toLowerCase())) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+}
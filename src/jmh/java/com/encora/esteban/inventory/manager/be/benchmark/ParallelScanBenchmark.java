@@ -0,0 +1,61 @@
+package com.encora.esteban.inventory.manager.be.benchmark;
+
+import com.encora.esteban.inventory.manager.be.store.ProductPage;
+import com.encora.esteban.inventory.manager.be.store.ProductQuery;
+import com.encora.esteban.inventory.manager.be.store.ProductSort;
+import com.encora.esteban.inventory.manager.be.store.ProductStore;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Listings that no index narrows (a one-letter name fragment, sorted by price) scanned on one
+ * thread versus split across a fork-join pool of {@code cores} workers. The speedup levels
+ * off at the number of cores the machine really has.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParallelScanBenchmark {
+
+    @Param({"100000", "1000000"})
+    int catalogSize;
+
+    @Param({"1", "2", "4", "8"})
+    int cores;
+
+    private ProductStore sequential;
+    private ProductStore parallel;
+    private ForkJoinPool pool;
+    private ProductQuery query;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        sequential = new ProductStore(false, Integer.MAX_VALUE);
+        parallel = new ProductStore(false, 0);
+        Catalogs.generate(catalogSize, sequential::add); // the same products twice, both laid out in id order
+        Catalogs.generate(catalogSize, parallel::add);
+        pool = new ForkJoinPool(cores);
+        query = ProductQuery.builder().name("m").sort(ProductSort.PRICE).descending(true).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public ProductPage sequentialScan() {
+        return sequential.query(query, 500, 10);
+    }
+
+    // Submitted to the pool, so the scan's partitions run on its workers
+    @Benchmark
+    public ProductPage parallelScan() {
+        return pool.submit(() -> parallel.query(query, 500, 10)).join();
+    }
+}
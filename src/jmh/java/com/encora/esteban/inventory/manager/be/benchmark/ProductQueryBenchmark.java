@@ -0,0 +1,63 @@
+package com.encora.esteban.inventory.manager.be.benchmark;
+
+import com.encora.esteban.inventory.manager.be.service.ProductService;
+import com.encora.esteban.inventory.manager.be.store.ProductStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Listing latency for filter / sort / paginate combinations as the catalog grows.
+ * "available" (in stock, ~90% of the catalog) is the broad filter that columnar scans target.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProductQueryBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    int catalogSize;
+
+    @Param({"none", "category", "inStock", "available", "name", "category+inStock+name"})
+    String filter;
+
+    @Param({"name", "price", "expiration"})
+    String sortBy;
+
+    @Param({"0", "50"})
+    int page;
+
+    @Param({"false", "true"})
+    boolean columnarScans;
+
+    private ProductService service;
+    private String name;
+    private String category;
+    private Boolean inStock;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        service = new ProductService(new SimpleMeterRegistry(), columnarScans, ProductStore.DEFAULT_PARALLEL_SCAN_THRESHOLD, 1024,
+                0, 64, Duration.ofSeconds(1));
+        Catalogs.generate(catalogSize, service::addProduct);
+        name = filter.contains("name") ? "lamp" : null;
+        category = filter.contains("category") ? "Food" : null;
+        inStock = filter.contains("inStock") ? Boolean.FALSE : filter.equals("available") ? Boolean.TRUE : null;
+    }
+
+    @Benchmark
+    public Map<String, Object> getProducts() {
+        return service.getProducts(name, category, inStock, page, 10, sortBy, "asc");
+    }
+
+    @Benchmark
+    public Map<String, Object> getProductsDescending() {
+        return service.getProducts(name, category, inStock, page, 10, sortBy, "desc");
+    }
+}
@@ -0,0 +1,98 @@
+package com.encora.esteban.inventory.manager.be.benchmark;
+
+import com.encora.esteban.inventory.manager.be.model.Product;
+import com.encora.esteban.inventory.manager.be.persistence.CatalogPersistence;
+import com.encora.esteban.inventory.manager.be.service.ProductService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Startup time: loading the latest snapshot and replaying the change-log tail written after it.
+ * Each invocation recovers into a fresh service, the way a restarted instance would.
+ * {@code recover} stops once requests can be served; {@code recoverAndIndex} also waits for
+ * the sorted and name indexes, which are built in the background.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RecoveryBenchmark {
+
+    private static final int BATCH = 10_000;
+
+    @Param({"100000", "1000000"})
+    int catalogSize;
+
+    // Updates written after the snapshot, replayed from the log
+    @Param({"0", "100000"})
+    int logTail;
+
+    private final ObjectMapper mapper = new ObjectMapper().findAndRegisterModules();
+    private Path directory;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("recovery-benchmark");
+        ProductService service = new ProductService();
+        try (CatalogPersistence persistence = new CatalogPersistence(service, mapper, directory, Long.MAX_VALUE)) {
+            persistence.start().join();
+            List<Product> batch = new ArrayList<>(BATCH);
+            Catalogs.generate(catalogSize, product -> {
+                batch.add(product);
+                if (batch.size() == BATCH) {
+                    service.addProducts(new ArrayList<>(batch));
+                    batch.clear();
+                }
+            });
+            service.addProducts(batch);
+            persistence.compact();
+
+            Random random = new Random(Catalogs.SEED);
+            List<Product> updates = new ArrayList<>(BATCH);
+            for (int i = 0; i < logTail; i++) {
+                Product update = Catalogs.product(random, i);
+                update.setId(1 + (long) random.nextInt(catalogSize));
+                updates.add(update);
+                if (updates.size() == BATCH) {
+                    service.updateProducts(updates);
+                    updates.clear();
+                }
+            }
+            service.updateProducts(updates);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public int recover() throws IOException {
+        ProductService service = new ProductService();
+        try (CatalogPersistence persistence = new CatalogPersistence(service, mapper, directory, Long.MAX_VALUE)) {
+            persistence.start();
+        }
+        return service.allProducts().size();
+    }
+
+    @Benchmark
+    public int recoverAndIndex() throws IOException {
+        ProductService service = new ProductService();
+        try (CatalogPersistence persistence = new CatalogPersistence(service, mapper, directory, Long.MAX_VALUE)) {
+            persistence.start().join();
+        }
+        return service.allProducts().size();
+    }
+}
@@ -0,0 +1,24 @@
+package com.encora.esteban.inventory.manager.be.config;
+
+import com.encora.esteban.inventory.manager.be.service.ExpirySweeper;
+import com.encora.esteban.inventory.manager.be.service.ProductService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+
+@Configuration
+@ConditionalOnProperty(prefix = "inventory.expiry-sweep", name = "enabled", havingValue = "true")
+public class ExpiryConfig {
+
+    @Bean(destroyMethod = "close")
+    public ExpirySweeper expirySweeper(ProductService productService,
+                                       @Value("${inventory.expiry-sweep.interval:1h}") Duration interval,
+                                       @Value("${inventory.expiry-sweep.categories:Food}") List<String> categories) {
+        return new ExpirySweeper(productService, Clock.systemDefaultZone(), interval, categories);
+    }
+}
@@ -0,0 +1,29 @@
+package com.encora.esteban.inventory.manager.be.config;
+
+import com.encora.esteban.inventory.manager.be.persistence.CatalogPersistence;
+import com.encora.esteban.inventory.manager.be.persistence.PersistenceProperties;
+import com.encora.esteban.inventory.manager.be.service.ProductService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+
+@Configuration
+@ConditionalOnProperty(prefix = "inventory.persistence", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(PersistenceProperties.class)
+public class PersistenceConfig {
+
+    // Recovers the catalog while the context starts, before the web server accepts requests
+    @Bean(destroyMethod = "close")
+    public CatalogPersistence catalogPersistence(ProductService productService, ObjectMapper objectMapper,
+                                                 PersistenceProperties properties) throws IOException {
+        CatalogPersistence persistence = new CatalogPersistence(productService, objectMapper,
+                properties.getDirectory(), properties.getMaxSegmentSize().toBytes());
+        persistence.start();
+        persistence.scheduleSnapshots(properties.getSnapshotInterval());
+        return persistence;
+    }
+}
@@ -0,0 +1,39 @@
+package com.encora.esteban.inventory.manager.be.config;
+
+import com.encora.esteban.inventory.manager.be.replication.FollowerRequests;
+import com.encora.esteban.inventory.manager.be.replication.ReplicationFollower;
+import com.encora.esteban.inventory.manager.be.replication.ReplicationProperties;
+import com.encora.esteban.inventory.manager.be.service.ProductService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+// Follower mode: on when a leader URL is set
+@Configuration
+@ConditionalOnProperty(prefix = "inventory.replication", name = "leader-url")
+@EnableConfigurationProperties(ReplicationProperties.class)
+public class ReplicationConfig {
+
+    @Bean(destroyMethod = "close")
+    public ReplicationFollower replicationFollower(ProductService productService, ObjectMapper objectMapper,
+                                                  ReplicationProperties properties, MeterRegistry registry) {
+        ReplicationFollower follower = new ReplicationFollower(productService, objectMapper, properties, registry);
+        follower.start();
+        return follower;
+    }
+
+    @Bean
+    public WebMvcConfigurer followerRequests(ReplicationFollower follower) {
+        return new WebMvcConfigurer() {
+            @Override
+            public void addInterceptors(InterceptorRegistry registry) {
+                registry.addInterceptor(new FollowerRequests(follower)).addPathPatterns("/inventory/**");
+            }
+        };
+    }
+}
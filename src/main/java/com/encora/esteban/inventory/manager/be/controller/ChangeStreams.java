@@ -0,0 +1,269 @@
+package com.encora.esteban.inventory.manager.be.controller;
+
+import com.encora.esteban.inventory.manager.be.service.ChangeFeed;
+import com.encora.esteban.inventory.manager.be.service.ProductService;
+import com.encora.esteban.inventory.manager.be.store.ProductChange;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Server-sent event streams of the {@link ChangeFeed}. Each published change is sent as one
+ * event named after its type ({@code create}, {@code update}, {@code stock}, {@code delete})
+ * with the change as JSON data, so followers apply small deltas instead of polling listings.
+ *
+ * Event ids carry the feed's sequence number. A client that reconnects with
+ * {@code Last-Event-ID} receives the changes it missed, or a {@code reset} event if they are
+ * no longer buffered or the id comes from an earlier run; it should then list the catalog again.
+ *
+ * A dispatcher thread waits for published changes and hands each stream's sends to a fixed pool
+ * of sender threads, so a client that stops reading only blocks its own stream and the one
+ * thread sending to it, until the server's write timeout fails that send; other streams wait
+ * only once every sender is blocked. A stream whose send has been blocked for
+ * {@value #SEND_TIMEOUT_SECONDS} seconds is dropped, and one that falls so far behind that its
+ * changes have left the feed's buffer gets a {@code reset} event and is closed; its client
+ * reconnects from there. Idle streams get a comment every
+ * {@value #HEARTBEAT_SECONDS} seconds so that closed connections are noticed. Streams never end
+ * on their own, so they are closed when shutdown begins, ahead of the web server's graceful
+ * shutdown that would otherwise wait for them.
+ */
+@Slf4j
+@Component
+public class ChangeStreams implements SmartLifecycle {
+
+    private static final long HEARTBEAT_SECONDS = 15;
+    private static final long RECONNECT_MILLIS = 3000;
+    private static final long SEND_TIMEOUT_SECONDS = 10;
+
+    private final ChangeFeed feed;
+    // Sequences restart with the process, so ids carry the start time to never resume a previous run
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final Set<Follower> followers = ConcurrentHashMap.newKeySet();
+    // Fixed size; its queue holds at most one pass per stream
+    private final ExecutorService senders;
+    private volatile Thread dispatcher;
+
+    public ChangeStreams(ProductService productService, MeterRegistry registry,
+                         @Value("${inventory.change-feed.sender-threads:16}") int senderThreads) {
+        this.feed = productService.changeFeed();
+        this.senders = Executors.newFixedThreadPool(senderThreads, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable task) {
+                Thread thread = new Thread(task, "change-stream-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        Gauge.builder("inventory.changes.followers", followers, Set::size)
+                .description("Open change feed streams")
+                .register(registry);
+        Gauge.builder("inventory.changes.sequence", feed, ChangeFeed::lastSequence)
+                .description("Sequence of the last published change; a follower's lag is this minus its inventory.replication.sequence")
+                .register(registry);
+    }
+
+    /**
+     * Opens a stream that starts after the given event id, or at the latest change if there is
+     * none. Changes the client missed are sent before this returns.
+     */
+    public SseEmitter follow(String lastEventId) throws IOException {
+        return follow(lastEventId, new SseEmitter(0L)); // no timeout; stuck connections hit the send timeout
+    }
+
+    SseEmitter follow(String lastEventId, SseEmitter emitter) throws IOException {
+        emitter.send(SseEmitter.event().reconnectTime(RECONNECT_MILLIS)); // also commits the response headers
+        long resumeAfter = parseSequence(lastEventId);
+        // A resume from an earlier run or from beyond the buffer gets a reset, then keeps streaming
+        boolean reset = lastEventId != null && (resumeAfter < 0 || feed.since(resumeAfter) == null);
+        Follower follower = new Follower(emitter, resumeAfter < 0 ? feed.lastSequence() : resumeAfter, reset);
+        emitter.onCompletion(() -> followers.remove(follower));
+        emitter.onError(failure -> followers.remove(follower));
+        followers.add(follower);
+        follower.catchUp();
+        return emitter;
+    }
+
+    @Override
+    public void start() {
+        long seen = feed.lastSequence(); // read here, so changes published while the thread starts are sent
+        Thread thread = new Thread(() -> dispatch(seen), "change-feed");
+        thread.setDaemon(true);
+        thread.start();
+        dispatcher = thread;
+    }
+
+    // Runs in the default phase, which stops before the web server's graceful shutdown
+    @Override
+    public void stop() {
+        Thread thread = dispatcher;
+        dispatcher = null;
+        if (thread != null) {
+            thread.interrupt();
+        }
+        followers.forEach(follower -> follower.emitter.complete());
+        senders.shutdownNow();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return dispatcher != null;
+    }
+
+    private void dispatch(long seen) {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                long published = feed.awaitAfter(seen, HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+                boolean idle = published == seen;
+                seen = published;
+                for (Follower follower : followers) {
+                    if (follower.stuck()) {
+                        follower.drop(new IOException("No send completed for " + SEND_TIMEOUT_SECONDS + " s"));
+                    } else {
+                        follower.schedule(idle);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // shutting down
+        }
+    }
+
+    // The sequence of one of this run's event ids, or -1
+    private long parseSequence(String eventId) {
+        if (eventId == null || !eventId.startsWith(epoch + "-")) {
+            return -1;
+        }
+        try {
+            long sequence = Long.parseLong(eventId.substring(epoch.length() + 1));
+            return sequence <= feed.lastSequence() ? sequence : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // One open stream; sends are serialized so a sender and a catching-up request never interleave
+    private final class Follower {
+
+        private final SseEmitter emitter;
+        private final ReentrantLock sending = new ReentrantLock();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private volatile long sendingSince; // nanoTime a send started, 0 between sends
+        private volatile long sent; // written while sending
+        private boolean resetPending;
+
+        Follower(SseEmitter emitter, long sent, boolean resetPending) {
+            this.emitter = emitter;
+            this.sent = sent;
+            this.resetPending = resetPending;
+        }
+
+        // Queues a pass over this stream's sends, unless one is already queued or running: a stream
+        // whose client stopped reading holds a single sender thread
+        void schedule(boolean idle) {
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    senders.execute(() -> {
+                        catchUp(); // even when idle: a pass queued for a heartbeat may be the only one
+                        if (idle) {
+                            heartbeat();
+                        }
+                        scheduled.set(false);
+                        if (sent < feed.lastSequence() && followers.contains(this)) {
+                            schedule(false); // published during the pass, which kept them from scheduling
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    scheduled.set(false); // shutting down
+                }
+            }
+        }
+
+        boolean stuck() {
+            long since = sendingSince;
+            return since != 0 && System.nanoTime() - since > TimeUnit.SECONDS.toNanos(SEND_TIMEOUT_SECONDS);
+        }
+
+        void catchUp() {
+            sending.lock();
+            try {
+                List<ProductChange> changes = resetPending ? null : feed.since(sent);
+                if (changes == null) {
+                    boolean fellBehind = !resetPending;
+                    sent = feed.lastSequence();
+                    resetPending = false;
+                    send(SseEmitter.event()
+                            .id(epoch + "-" + sent)
+                            .name("reset")
+                            .data(Map.of("sequence", sent), MediaType.APPLICATION_JSON));
+                    if (fellBehind) {
+                        // Too slow to keep up: the client reconnects from the reset instead of lagging further
+                        followers.remove(this);
+                        emitter.complete();
+                        return;
+                    }
+                    changes = Objects.requireNonNullElse(feed.since(sent), List.of());
+                }
+                for (ProductChange change : changes) {
+                    send(SseEmitter.event()
+                            .id(epoch + "-" + change.getSequence())
+                            .name(change.getType().name().toLowerCase(Locale.ROOT))
+                            .data(change, MediaType.APPLICATION_JSON));
+                    sent = change.getSequence();
+                }
+            } catch (IOException | IllegalStateException e) {
+                drop(e);
+            } finally {
+                sending.unlock();
+            }
+        }
+
+        void heartbeat() {
+            sending.lock();
+            try {
+                send(SseEmitter.event().comment("heartbeat"));
+            } catch (IOException | IllegalStateException e) {
+                drop(e);
+            } finally {
+                sending.unlock();
+            }
+        }
+
+        private void send(SseEmitter.SseEventBuilder event) throws IOException {
+            sendingSince = System.nanoTime();
+            try {
+                emitter.send(event);
+            } finally {
+                sendingSince = 0;
+            }
+        }
+
+        void drop(Exception e) {
+            log.debug("Change stream closed: {}", e.toString());
+            followers.remove(this);
+            emitter.completeWithError(e);
+        }
+    }
+}
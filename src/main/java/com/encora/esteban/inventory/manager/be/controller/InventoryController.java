@@ -1,35 +1,180 @@
 package com.encora.esteban.inventory.manager.be.controller;
 import com.encora.esteban.inventory.manager.be.model.Product;
+import com.encora.esteban.inventory.manager.be.model.StockAdjustment;
 
+import com.encora.esteban.inventory.manager.be.service.InsufficientStockException;
+import com.encora.esteban.inventory.manager.be.service.JournalFailedException;
+import com.encora.esteban.inventory.manager.be.service.ListingRejectedException;
 import com.encora.esteban.inventory.manager.be.service.ProductService;
+import com.encora.esteban.inventory.manager.be.service.StockAdjustmentResult;
+import com.encora.esteban.inventory.manager.be.service.VersionConflictException;
+import com.encora.esteban.inventory.manager.be.store.ProductSort;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Flow;
+import java.util.stream.Stream;
 
+@Slf4j
 @RestController
 @RequestMapping("/inventory")
 public class InventoryController {
 
     private final ProductService productService;
+    private final ObjectMapper objectMapper;
+    private final ListingCache listingCache;
+    private final ChangeStreams changeStreams;
 
-    public InventoryController(ProductService productService) {
+    public InventoryController(ProductService productService, ObjectMapper objectMapper, ListingCache listingCache,
+                               ChangeStreams changeStreams) {
         this.productService = productService;
+        this.objectMapper = objectMapper;
+        this.listingCache = listingCache;
+        this.changeStreams = changeStreams;
     }
 
+    /**
+     * Listings carry a strong ETag derived from the catalog version. A request whose
+     * If-None-Match still matches is answered with 304 before any work, and repeated queries
+     * at the same version are served from the {@link ListingCache}.
+     */
     @GetMapping("/products")
-    public Map<String, Object> getProducts(
+    public ResponseEntity<byte[]> getProducts(
             @RequestParam(required = false) String name,
             @RequestParam(required = false) String category,
             @RequestParam(required = false) Boolean inStock,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(defaultValue = "name") String sortBy,
+            @RequestParam(defaultValue = "asc") String sortOrder,
+            @RequestParam(required = false) String cursor,
+            WebRequest request
+    ) throws IOException {
+        if (cursor != null) {
+            productService.checkCursor(cursor, sortBy, sortOrder); // a bad cursor is a 400 even if the ETag matches
+        }
+        long version = productService.catalogVersion();
+        String etag = listingCache.etag(version);
+        if (request.checkNotModified(etag)) {
+            listingCache.recordNotModified();
+            return null;
+        }
+
+        ListingCache.Key key = new ListingCache.Key(name, category, inStock, page, size,
+                ProductSort.fromParam(sortBy), "desc".equals(sortOrder), cursor);
+        byte[] body = listingCache.get(key, version);
+        if (body == null) {
+            Map<String, Object> listing = cursor != null
+                    // Keyset pagination: continue after the last product of the previous page
+                    ? productService.getProductsAfter(cursor, name, category, inStock, page, size, sortBy, sortOrder)
+                    : productService.getProducts(name, category, inStock, page, size, sortBy, sortOrder);
+            body = objectMapper.writeValueAsBytes(listing);
+            if (productService.catalogVersion() == version) { // only reuse bodies that no write overlapped
+                listingCache.put(key, version, body);
+            }
+        }
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
+    }
+
+
+    // Streams every matching product as newline-delimited JSON, so heap use stays flat for any export size
+    @GetMapping(value = "/products/export", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> exportProducts(
+            @RequestParam(required = false) String name,
+            @RequestParam(required = false) String category,
+            @RequestParam(required = false) Boolean inStock,
+            @RequestParam(defaultValue = "name") String sortBy,
             @RequestParam(defaultValue = "asc") String sortOrder
     ) {
-        return productService.getProducts(name, category, inStock, page, size, sortBy, sortOrder);
+        ObjectWriter writer = objectMapper.writer()
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE) // let the generator buffer rows
+                .withRootValueSeparator("\n");
+
+        StreamingResponseBody body = out -> {
+            try (Stream<Product> products = productService.streamProducts(name, category, inStock, sortBy, sortOrder);
+                 SequenceWriter rows = writer.writeValues(out)) {
+                for (Iterator<Product> it = products.iterator(); it.hasNext(); ) {
+                    rows.write(it.next());
+                }
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(body);
+    }
+
+
+    /**
+     * Non-blocking variant of the export: products are produced only as fast as the client reads
+     * them, and no thread is held while the client is slow, so many long-lived downloads share
+     * the container's few I/O threads.
+     */
+    @GetMapping(value = "/products/stream", produces = "application/x-ndjson")
+    public void streamProducts(
+            @RequestParam(required = false) String name,
+            @RequestParam(required = false) String category,
+            @RequestParam(required = false) Boolean inStock,
+            @RequestParam(defaultValue = "name") String sortBy,
+            @RequestParam(defaultValue = "asc") String sortOrder,
+            HttpServletRequest request,
+            HttpServletResponse response
+    ) throws IOException {
+        Flow.Publisher<Product> products = productService.publishProducts(name, category, inStock, sortBy, sortOrder);
+        response.setContentType("application/x-ndjson");
+        NdjsonResponseSubscriber.stream(products, request, response, objectMapper.writer());
+    }
+
+    // Server-sent events for every catalog change once it is durable; see ChangeStreams for resuming
+    @GetMapping(value = "/products/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter followChanges(@RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) throws IOException {
+        return changeStreams.follow(lastEventId);
+    }
+
+    // Products expiring in the range, both days included (ISO dates); from defaults to today
+    @GetMapping("/products/expiring")
+    public List<Product> getExpiringProducts(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to
+    ) {
+        return productService.getProductsExpiringBetween(from != null ? from : LocalDate.now(), to);
+    }
+
+    // The ETag is the product's version; send it back in If-Match to update only that version
+    @GetMapping("/products/{id}")
+    public ResponseEntity<Product> getProduct(@PathVariable Long id) {
+        return productService.getProductById(id)
+                .map(product -> ResponseEntity.ok().eTag(etag(product.getVersion())).body(product))
+                .orElseGet(() -> ResponseEntity.notFound().build()); // 404 if product doesn't exist
     }
 
 
@@ -45,17 +190,23 @@ public class InventoryController {
     }
 
 
+    /**
+     * With If-Match, the update applies only if the product is still at that version, and a
+     * concurrent edit is answered with 412 instead of being overwritten. Without it, any
+     * version is replaced.
+     */
     @PutMapping("/products/{id}")
     public ResponseEntity<Void> updateProduct(
             @PathVariable Long id,
+            @RequestHeader(value = "If-Match", required = false) String ifMatch,
             @RequestBody Product updatedProduct) {
-        boolean updated = productService.updateProduct(id, updatedProduct);
-
-        if (updated) {
-            System.out.println("Product Updated: " + updatedProduct.getName());
-            System.out.println("New Update Date: " + updatedProduct.getUpdateDate());
+        if (!Product.isSupportedDate(updatedProduct.getExpirationDate())) {
+            return ResponseEntity.badRequest().build();
+        }
+        Optional<Product> updated = productService.updateProduct(id, updatedProduct, ifMatch == null ? null : ifMatchVersion(ifMatch));
 
-            return ResponseEntity.ok().build();
+        if (updated.isPresent()) {
+            return ResponseEntity.ok().eTag(etag(updated.get().getVersion())).build();
         } else {
             return ResponseEntity.notFound().build(); // 404 if product doesn't exist
         }
@@ -65,31 +216,92 @@ public class InventoryController {
 
     @PostMapping("/products")
     public ResponseEntity<Product> addProduct(@RequestBody Product product) {
-        System.out.println("Received Product: " + product); // Log received product
+        log.debug("Received product: {}", product);
 
-        if (product.getName().length() > 120) {
-            return ResponseEntity.badRequest().body(null); // Name too long
+        if (validationError(product) != null) {
+            return ResponseEntity.badRequest().body(null);
         }
-        if (product.getUnitPrice() <= 0) {
-            return ResponseEntity.badRequest().body(null); // Price must be positive
+
+        Product savedProduct = productService.addProduct(product);
+        return ResponseEntity.ok(savedProduct);
+    }
+
+
+    // Bulk create from a JSON array; nothing is stored unless every product is valid
+    @PostMapping("/products/batch")
+    public ResponseEntity<?> addProducts(@RequestBody List<Product> products) {
+        ResponseEntity<?> invalid = validateBatch(products);
+        if (invalid != null) {
+            return invalid;
         }
+        return ResponseEntity.ok(productService.addProducts(products));
+    }
 
-        if (product.getQuantityInStock() < 0) {
-            return ResponseEntity.badRequest().body(null); // Stock cannot be negative
+    // Bulk create from CSV with a header line (name,category,unitPrice,quantityInStock[,expirationDate])
+    @PostMapping(value = "/products/import", consumes = "text/csv")
+    public ResponseEntity<?> importProducts(InputStream body) throws IOException {
+        List<Product> products = ProductCsvReader.read(new InputStreamReader(body, StandardCharsets.UTF_8));
+        ResponseEntity<?> invalid = validateBatch(products);
+        if (invalid != null) {
+            return invalid;
         }
-        if ("Food".equalsIgnoreCase(product.getCategory()) && product.getExpirationDate() == null) {
-            return ResponseEntity.badRequest().build(); // Return error if food product doesn't have an expiration date
+        productService.addProducts(products);
+        return ResponseEntity.ok(Map.of("created", products.size()));
+    }
+
+    // Bulk update from a JSON array of products carrying their ids, each id at most once
+    @PutMapping("/products/batch")
+    public ResponseEntity<?> updateProducts(@RequestBody List<Product> products) {
+        ResponseEntity<?> invalid = validateBatch(products);
+        if (invalid != null) {
+            return invalid;
+        }
+        Set<Long> ids = new HashSet<>();
+        for (int i = 0; i < products.size(); i++) {
+            if (products.get(i).getId() == null) {
+                return ResponseEntity.badRequest().body(Map.of("index", i, "error", "Missing id"));
+            }
+            if (!ids.add(products.get(i).getId())) {
+                return ResponseEntity.badRequest().body(Map.of("index", i, "error", "Duplicate id"));
+            }
         }
+        List<Long> notFound = productService.updateProducts(products);
+        return ResponseEntity.ok(Map.of("updated", products.size() - notFound.size(), "notFound", notFound));
+    }
 
-        Product savedProduct = productService.addProduct(product);
-        System.out.println("Saved Product: " + savedProduct);
-        System.out.println("🕒 Creation Date: " + savedProduct.getCreationDate());
-        System.out.println("🕒 Update Date: " + savedProduct.getUpdateDate());
-        return ResponseEntity.ok(savedProduct);
+    // Bulk delete from a JSON array of ids
+    @DeleteMapping("/products/batch")
+    public ResponseEntity<Map<String, Object>> deleteProducts(@RequestBody List<Long> ids) {
+        List<Long> notFound = productService.deleteProducts(ids);
+        return ResponseEntity.ok(Map.of("deleted", ids.size() - notFound.size(), "notFound", notFound));
     }
 
 
 
+    /**
+     * Adds {@code delta} to the product's stock atomically; concurrent adjustments all count.
+     * Answers 409 with the current stock, writing nothing, if the stock would go below zero.
+     */
+    @PostMapping("/products/{id}/stock")
+    public ResponseEntity<Product> adjustStock(@PathVariable Long id, @RequestBody StockAdjustment adjustment) {
+        return productService.adjustStock(id, adjustment.getDelta())
+                .map(product -> ResponseEntity.ok().eTag(etag(product.getVersion())).body(product))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    // Bulk stock adjustment from a JSON array of {id, delta}; each product is adjusted or rejected on its own
+    @PostMapping("/products/stock")
+    public ResponseEntity<?> adjustStocks(@RequestBody List<StockAdjustment> adjustments) {
+        for (int i = 0; i < adjustments.size(); i++) {
+            if (adjustments.get(i).getId() == null) {
+                return ResponseEntity.badRequest().body(Map.of("index", i, "error", "Missing id"));
+            }
+        }
+        StockAdjustmentResult result = productService.adjustStocks(adjustments);
+        return ResponseEntity.ok(Map.of("adjusted", result.getAdjusted(), "notFound", result.getNotFound(),
+                "rejected", result.getRejected()));
+    }
+
     @PostMapping("/products/{id}/outofstock")
     public ResponseEntity<Void> markOutOfStock(@PathVariable Long id) {
         boolean updated = productService.markProductOutOfStock(id);
@@ -102,4 +314,82 @@ public class InventoryController {
         return updated ? ResponseEntity.ok().build() : ResponseEntity.notFound().build();
     }
 
+    // Checks the whole batch before anything is written; reports the first invalid product
+    private static ResponseEntity<?> validateBatch(List<Product> products) {
+        for (int i = 0; i < products.size(); i++) {
+            String error = validationError(products.get(i));
+            if (error != null) {
+                return ResponseEntity.badRequest().body(Map.of("index", i, "error", error));
+            }
+        }
+        return null;
+    }
+
+    private static String etag(long version) {
+        return "\"" + version + "\"";
+    }
+
+    // The version named by an If-Match header: null for "*" (any version), 0 (matching none) for weak or foreign tags
+    private static Long ifMatchVersion(String ifMatch) {
+        String tag = ifMatch.trim();
+        if (tag.equals("*")) {
+            return null;
+        }
+        if (tag.length() < 3 || tag.charAt(0) != '"' || tag.charAt(tag.length() - 1) != '"') {
+            return 0L;
+        }
+        try {
+            return Long.parseLong(tag.substring(1, tag.length() - 1));
+        } catch (NumberFormatException e) {
+            return 0L;
+        }
+    }
+
+    private static String validationError(Product product) {
+        if (product.getName() == null || product.getName().length() > 120) {
+            return "Name is required and at most 120 characters";
+        }
+        if (product.getUnitPrice() <= 0) {
+            return "Price must be positive";
+        }
+        if (product.getQuantityInStock() < 0) {
+            return "Stock cannot be negative";
+        }
+        if ("Food".equalsIgnoreCase(product.getCategory()) && product.getExpirationDate() == null) {
+            return "Food products need an expiration date";
+        }
+        if (!Product.isSupportedDate(product.getExpirationDate())) {
+            return "Expiration date must be between " + Product.EARLIEST_DATE + " and " + Product.LATEST_DATE;
+        }
+        return null;
+    }
+
+    @ExceptionHandler(VersionConflictException.class)
+    public ResponseEntity<Void> handleVersionConflict(VersionConflictException e) {
+        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).eTag(etag(e.getCurrentVersion())).build();
+    }
+
+    @ExceptionHandler(InsufficientStockException.class)
+    public ResponseEntity<Map<String, Object>> handleInsufficientStock(InsufficientStockException e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(Map.of("error", e.getMessage(), "quantityInStock", e.getQuantityInStock()));
+    }
+
+    // Load shedding: the client should retry shortly, ideally after a random delay
+    @ExceptionHandler(ListingRejectedException.class)
+    public ResponseEntity<Void> handleListingRejected(ListingRejectedException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").build();
+    }
+
+    // The change journal failed: writes are refused until the instance restarts
+    @ExceptionHandler(JournalFailedException.class)
+    public ResponseEntity<Void> handleJournalFailed(JournalFailedException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Void> handleBadRequest(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().build(); // e.g. a malformed or mismatched cursor, or a malformed CSV row
+    }
+
 }
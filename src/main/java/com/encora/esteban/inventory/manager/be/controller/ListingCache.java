@@ -0,0 +1,126 @@
+package com.encora.esteban.inventory.manager.be.controller;
+
+import com.encora.esteban.inventory.manager.be.store.ProductSort;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Serialized product listings, keyed by their query parameters and reused while the catalog
+ * version they were built at is still current. Polling clients that repeat a query between
+ * writes get the stored bytes back without any filtering, sorting or serialization.
+ *
+ * Each query keeps only its latest version, since older ones can never be requested again, and
+ * the least recently used queries are evicted beyond {@code maxEntries}. Listings are built
+ * outside the lock, so a slow listing never blocks hits on others.
+ */
+@Component
+public class ListingCache {
+
+    private final int maxEntries;
+    // Versions restart with the process, so ETags carry the start time to never match a previous run's
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<Key, Entry> entries;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter notModified;
+    private final Counter evictions;
+
+    private record Entry(long version, byte[] body) {
+    }
+
+    /**
+     * The listing parameters, with the sort normalized the way the service reads it. Compared
+     * field by field, so an absent filter never matches one whose value is the text "null".
+     */
+    record Key(String name, String category, Boolean inStock, int page, int size,
+               ProductSort sort, boolean descending, String cursor) {
+    }
+
+    public ListingCache(MeterRegistry registry, @Value("${inventory.listing-cache.max-entries:256}") int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                boolean evict = size() > ListingCache.this.maxEntries;
+                if (evict) {
+                    evictions.increment();
+                }
+                return evict;
+            }
+        };
+
+        hits = requestCounter(registry, "hit");
+        misses = requestCounter(registry, "miss");
+        notModified = requestCounter(registry, "not_modified");
+        evictions = Counter.builder("inventory.listing.cache.evictions")
+                .description("Cached listings evicted to stay within the size bound")
+                .register(registry);
+        Gauge.builder("inventory.listing.cache.size", this, ListingCache::size)
+                .description("Listings currently cached")
+                .register(registry);
+    }
+
+    // Strong ETag of every listing at the given catalog version
+    public String etag(long version) {
+        return "\"" + epoch + "-" + version + "\"";
+    }
+
+    // The cached body of the query at exactly this version, or null
+    public byte[] get(Key key, long version) {
+        lock.lock();
+        try {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.version() == version) {
+                hits.increment();
+                return entry.body();
+            }
+        } finally {
+            lock.unlock();
+        }
+        misses.increment();
+        return null;
+    }
+
+    // Callers only store bodies whose catalog version did not change while they were built
+    public void put(Key key, long version, byte[] body) {
+        lock.lock();
+        try {
+            Entry current = entries.get(key);
+            if (current == null || current.version() < version) {
+                entries.put(key, new Entry(version, body));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // A conditional request answered with 304 Not Modified
+    public void recordNotModified() {
+        notModified.increment();
+    }
+
+    private int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static Counter requestCounter(MeterRegistry registry, String result) {
+        return Counter.builder("inventory.listing.cache.requests")
+                .description("Listing requests by cache outcome; hit rate is hit / (hit + miss)")
+                .tag("result", result)
+                .register(registry);
+    }
+}
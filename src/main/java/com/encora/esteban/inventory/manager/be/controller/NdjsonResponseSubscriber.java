@@ -0,0 +1,106 @@
+package com.encora.esteban.inventory.manager.be.controller;
+
+import com.encora.esteban.inventory.manager.be.model.Product;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.concurrent.Flow;
+
+/**
+ * Writes a publisher's products to the response as newline-delimited JSON with non-blocking
+ * servlet I/O. A product is requested only while the connection can take more bytes, so the
+ * client's read rate is the backpressure, and between writes the response holds no thread:
+ * the container calls back once the socket drains.
+ *
+ * Relies on the publisher emitting on the thread that requests, as {@code ProductService}'s
+ * publishers do, so that every write happens inside a container callback.
+ */
+@Slf4j
+final class NdjsonResponseSubscriber implements Flow.Subscriber<Product> {
+
+    private final AsyncContext async;
+    private final ServletOutputStream out;
+    private final ObjectWriter writer;
+    private Flow.Subscription subscription;
+    private boolean finished;
+    private boolean written;
+
+    private NdjsonResponseSubscriber(AsyncContext async, ServletOutputStream out, ObjectWriter writer) {
+        this.async = async;
+        this.out = out;
+        this.writer = writer;
+    }
+
+    // Switches the request to async mode and returns; the products are written from container callbacks
+    static void stream(Flow.Publisher<Product> products, HttpServletRequest request, HttpServletResponse response,
+                       ObjectWriter writer) throws IOException {
+        AsyncContext async = request.startAsync();
+        async.setTimeout(0); // a slow reader is paced, not timed out
+        NdjsonResponseSubscriber subscriber = new NdjsonResponseSubscriber(async, response.getOutputStream(), writer);
+        products.subscribe(subscriber);
+        subscriber.out.setWriteListener(subscriber.new Writes()); // the container calls onWritePossible right away
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+    }
+
+    @Override
+    public void onNext(Product product) {
+        try {
+            byte[] json = writer.writeValueAsBytes(product);
+            byte[] line = Arrays.copyOf(json, json.length + 1);
+            line[json.length] = '\n';
+            out.write(line); // a single write: once it leaves the stream not ready, no other may follow
+            written = true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // reported back through onError
+        }
+    }
+
+    @Override
+    public void onComplete() {
+        finished = true;
+    }
+
+    @Override
+    public void onError(Throwable failure) {
+        log.warn("Product stream failed", failure);
+        if (!written) {
+            ((HttpServletResponse) async.getResponse()).setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        }
+        finished = true; // the body ends early; clients detect it by the missing rows
+    }
+
+    // Container callbacks for the response's output stream
+    private final class Writes implements WriteListener {
+
+        @Override
+        public void onWritePossible() throws IOException {
+            while (out.isReady()) {
+                if (finished) {
+                    async.complete();
+                    return;
+                }
+                subscription.request(1); // writes one product, or finishes
+            }
+        }
+
+        // The connection failed, e.g. the client went away
+        @Override
+        public void onError(Throwable failure) {
+            log.debug("Product stream aborted: {}", failure.toString());
+            subscription.cancel();
+            async.complete();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.encora.esteban.inventory.manager.be.controller;
+
+import com.encora.esteban.inventory.manager.be.model.Product;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Reads products from CSV for bulk import. The first line is a header naming the columns, in
+ * any order: name, category, unitPrice, quantityInStock and optionally expirationDate
+ * (yyyy-MM-dd, empty for none). Fields may be double-quoted, with "" standing for a quote.
+ */
+final class ProductCsvReader {
+
+    private static final String[] REQUIRED = {"name", "category", "unitprice", "quantityinstock"};
+
+    private ProductCsvReader() {
+    }
+
+    /**
+     * @throws IllegalArgumentException naming the line of the first malformed row
+     */
+    static List<Product> read(Reader source) throws IOException {
+        BufferedReader reader = new BufferedReader(source);
+        String header = reader.readLine();
+        if (header == null) {
+            return List.of();
+        }
+        Map<String, Integer> columns = new HashMap<>();
+        List<String> names = split(header, 1);
+        for (int i = 0; i < names.size(); i++) {
+            columns.put(names.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+        for (String column : REQUIRED) {
+            if (!columns.containsKey(column)) {
+                throw new IllegalArgumentException("CSV header is missing column " + column);
+            }
+        }
+
+        List<Product> products = new ArrayList<>();
+        String line;
+        int lineNumber = 1;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            List<String> fields = split(line, lineNumber);
+            try {
+                Product product = new Product();
+                product.setName(field(fields, columns, "name"));
+                product.setCategory(field(fields, columns, "category"));
+                product.setUnitPrice(Double.parseDouble(field(fields, columns, "unitprice")));
+                product.setQuantityInStock(Integer.parseInt(field(fields, columns, "quantityinstock")));
+                String expiration = field(fields, columns, "expirationdate");
+                if (expiration != null && !expiration.isEmpty()) {
+                    product.setExpirationDate(LocalDate.parse(expiration));
+                }
+                products.add(product);
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Malformed CSV row on line " + lineNumber, e);
+            }
+        }
+        return products;
+    }
+
+    private static String field(List<String> fields, Map<String, Integer> columns, String column) {
+        Integer index = columns.get(column);
+        return index == null || index >= fields.size() ? null : fields.get(index).trim();
+    }
+
+    private static List<String> split(String line, int lineNumber) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quote on line " + lineNumber);
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
@@ -1,15 +1,21 @@
 package com.encora.esteban.inventory.manager.be.model;
 
 import lombok.AllArgsConstructor;
+import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import java.time.LocalDate;
 
 
 @Data
+@Builder(toBuilder = true)
 @AllArgsConstructor
 @NoArgsConstructor
 public class Product {
+    // Dates are kept as int epoch days by the column mirror and in snapshots, so writes are limited to these years
+    public static final LocalDate EARLIEST_DATE = LocalDate.of(1, 1, 1);
+    public static final LocalDate LATEST_DATE = LocalDate.of(9999, 12, 31);
+
     private Long id;
 
    private String name;
@@ -25,4 +31,17 @@ public class Product {
     private LocalDate creationDate;
 
     private LocalDate updateDate;
+
+    // Incremented by every write; clients send it back in If-Match to update only the version they read
+    private long version;
+
+    public Product(Long id, String name, String category, double unitPrice, LocalDate expirationDate,
+                   int quantityInStock, LocalDate creationDate, LocalDate updateDate) {
+        this(id, name, category, unitPrice, expirationDate, quantityInStock, creationDate, updateDate, 0);
+    }
+
+    // Whether the date is absent or within EARLIEST_DATE..LATEST_DATE
+    public static boolean isSupportedDate(LocalDate date) {
+        return date == null || (!date.isBefore(EARLIEST_DATE) && !date.isAfter(LATEST_DATE));
+    }
 }
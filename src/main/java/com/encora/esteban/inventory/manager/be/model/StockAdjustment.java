@@ -0,0 +1,15 @@
+package com.encora.esteban.inventory.manager.be.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// A relative stock change: positive deltas restock, negative ones take units out
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class StockAdjustment {
+    private Long id;
+
+    private int delta;
+}
@@ -0,0 +1,221 @@
+package com.encora.esteban.inventory.manager.be.persistence;
+
+import com.encora.esteban.inventory.manager.be.model.Product;
+import com.encora.esteban.inventory.manager.be.service.ProductService;
+import com.encora.esteban.inventory.manager.be.store.ProductChange;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps the in-memory catalog durable: every write is appended to the {@link ChangeLog}
+ * before it is acknowledged, and closed log segments are periodically compacted into a
+ * snapshot so that recovery only replays the snapshot plus a bounded tail of log.
+ *
+ * Compaction never reads the live catalog. It merges the previous snapshot with the changes
+ * of the closed segments, both ordered by id, so it needs no pause of writers and only
+ * holds the latest change per product touched since the last snapshot in memory.
+ */
+@Slf4j
+public class CatalogPersistence implements Closeable {
+
+    private final ProductService productService;
+    private final ObjectMapper mapper;
+    private final Path directory;
+    private final long maxSegmentBytes;
+    private final ReentrantLock compactionLock = new ReentrantLock();
+
+    private ChangeLog changeLog;
+    private ScheduledExecutorService compactor;
+
+    public CatalogPersistence(ProductService productService, ObjectMapper mapper, Path directory, long maxSegmentBytes) {
+        this.productService = productService;
+        this.mapper = mapper;
+        this.directory = directory;
+        this.maxSegmentBytes = maxSegmentBytes;
+    }
+
+    /**
+     * Recovers the catalog from disk, then journals every subsequent write. Returns as soon as
+     * the products are loaded; the sorted and name indexes are built in the background.
+     *
+     * @return completes once the indexes are built
+     */
+    public CompletableFuture<Void> start() throws IOException {
+        long started = System.nanoTime();
+        long lastSequence = recover();
+        changeLog = new ChangeLog(directory, mapper, maxSegmentBytes, lastSequence);
+        productService.attachJournal(changeLog);
+        log.info("Recovered {} products up to change {} from {} in {} ms", productService.allProducts().size(),
+                lastSequence, directory, elapsedMillis(started));
+
+        return productService.finishRestore().whenComplete((done, failure) -> {
+            if (failure == null) {
+                log.info("Catalog indexes built {} ms after startup", elapsedMillis(started));
+            } else {
+                log.error("Building the catalog indexes failed", failure);
+            }
+        });
+    }
+
+    // Compacts the log in the background every interval
+    public void scheduleSnapshots(Duration interval) {
+        compactor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "catalog-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        compactor.scheduleWithFixedDelay(() -> {
+            try {
+                compact();
+            } catch (IOException | RuntimeException e) {
+                log.error("Catalog compaction failed; the change log is kept", e);
+            }
+        }, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Closes the current segment and folds every closed segment into a new snapshot, then
+     * deletes the segments and the previous snapshot. The snapshot's rename is fsynced with its
+     * directory before anything is deleted, so a power loss never keeps the deletes without it.
+     */
+    public void compact() throws IOException {
+        compactionLock.lock();
+        try {
+            long openSegment = changeLog.rotate().join();
+            List<Path> closed = new ArrayList<>();
+            for (Path segment : PersistenceFiles.segments(directory)) {
+                if (PersistenceFiles.sequence(segment) < openSegment) {
+                    closed.add(segment);
+                }
+            }
+            if (closed.isEmpty()) {
+                return;
+            }
+
+            Optional<Path> base = PersistenceFiles.latestSnapshot(directory);
+            long baseSequence = base.map(PersistenceFiles::sequence).orElse(0L);
+            TreeMap<Long, ProductChange> latest = new TreeMap<>();
+            long[] lastSequence = {baseSequence};
+            for (Path segment : closed) {
+                ChangeSegments.read(segment, mapper, change -> {
+                    if (change.getSequence() > baseSequence) {
+                        latest.put(change.getId(), change);
+                        lastSequence[0] = change.getSequence();
+                    }
+                });
+            }
+
+            if (lastSequence[0] > baseSequence) {
+                writeMergedSnapshot(base, latest, lastSequence[0]);
+                log.info("Compacted {} segments into snapshot {}", closed.size(), lastSequence[0]);
+            }
+            for (Path segment : closed) {
+                Files.deleteIfExists(segment);
+            }
+        } finally {
+            compactionLock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (compactor != null) {
+            compactor.shutdown();
+        }
+        if (changeLog != null) {
+            changeLog.close();
+        }
+    }
+
+    /**
+     * Loads the latest snapshot and replays every later change. A fresh directory is
+     * initialised with a snapshot of the current catalog, so the demo data survives restarts.
+     */
+    private long recover() throws IOException {
+        Files.createDirectories(directory);
+        Optional<Path> snapshot = PersistenceFiles.latestSnapshot(directory);
+        List<Path> segments = PersistenceFiles.segments(directory);
+        if (snapshot.isEmpty() && segments.isEmpty()) {
+            List<Product> current = new ArrayList<>(productService.allProducts());
+            current.sort(Comparator.comparing(Product::getId));
+            try (CatalogSnapshots.Writer out = CatalogSnapshots.create(PersistenceFiles.snapshot(directory, 0))) {
+                for (Product product : current) {
+                    out.add(product);
+                }
+                out.commit();
+            }
+            return 0;
+        }
+
+        productService.beginRestore();
+        long[] lastSequence = {0};
+        if (snapshot.isPresent()) {
+            lastSequence[0] = PersistenceFiles.sequence(snapshot.get());
+            CatalogSnapshots.read(snapshot.get(), product -> productService.applyChange(
+                    new ProductChange(0, ProductChange.Type.CREATE, product.getId(), product)));
+        }
+        for (Path segment : segments) {
+            ChangeSegments.read(segment, mapper, change -> {
+                if (change.getSequence() > lastSequence[0]) { // older changes are already in the snapshot
+                    productService.applyChange(change);
+                    lastSequence[0] = change.getSequence();
+                }
+            });
+        }
+        return lastSequence[0];
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    // Streams the base snapshot and the latest changes, both ordered by id, into a new snapshot
+    private void writeMergedSnapshot(Optional<Path> base, TreeMap<Long, ProductChange> latest, long sequence) throws IOException {
+        try (CatalogSnapshots.Writer out = CatalogSnapshots.create(PersistenceFiles.snapshot(directory, sequence))) {
+            if (base.isPresent()) {
+                CatalogSnapshots.read(base.get(), product -> {
+                    writeChangesBefore(out, latest, product.getId());
+                    ProductChange change = latest.remove(product.getId());
+                    if (change == null) {
+                        out.add(product);
+                    } else if (change.getType() != ProductChange.Type.DELETE) {
+                        out.add(change.getProduct());
+                    }
+                });
+            }
+            writeChangesBefore(out, latest, Long.MAX_VALUE);
+            out.commit();
+        }
+        for (Path old : PersistenceFiles.snapshots(directory)) {
+            if (PersistenceFiles.sequence(old) < sequence) {
+                Files.deleteIfExists(old);
+            }
+        }
+    }
+
+    private static void writeChangesBefore(CatalogSnapshots.Writer out, TreeMap<Long, ProductChange> latest, long id) {
+        while (!latest.isEmpty() && latest.firstKey() < id) {
+            Map.Entry<Long, ProductChange> entry = latest.pollFirstEntry();
+            if (entry.getValue().getType() != ProductChange.Type.DELETE) {
+                out.add(entry.getValue().getProduct());
+            }
+        }
+    }
+}
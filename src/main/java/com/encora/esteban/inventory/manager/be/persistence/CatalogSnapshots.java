@@ -0,0 +1,245 @@
+package com.encora.esteban.inventory.manager.be.persistence;
+
+import com.encora.esteban.inventory.manager.be.model.Product;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Snapshot files: every product of the catalog, ordered by id so that compaction can merge a
+ * snapshot with later changes in a single streaming pass.
+ *
+ * The format is binary and columnar, and is written and read through a memory mapping:
+ * <pre>
+ * header     magic, rows, name bytes, categories          4 ints
+ * categories length-prefixed UTF-8 strings, referenced by code
+ * id         long[rows]
+ * version    long[rows]
+ * unitPrice  double[rows]
+ * stock      int[rows]
+ * category   int[rows]   code, or -1 for none
+ * expiration int[rows]   epoch day, or {@link #NO_DATE}
+ * creation   int[rows]   epoch day, or {@link #NO_DATE}
+ * update     int[rows]   epoch day, or {@link #NO_DATE}
+ * nameLength int[rows]   or -1 for none
+ * names      UTF-8 bytes, in row order
+ * </pre>
+ * Loading decodes fixed-width columns with absolute reads and no parsing, and rows share their
+ * category strings and dates instead of holding a copy each.
+ */
+final class CatalogSnapshots {
+
+    private static final int MAGIC = 0x494E5632; // "INV2"
+    private static final int HEADER_BYTES = 4 * Integer.BYTES;
+    private static final int FIXED_ROW_BYTES = 2 * Long.BYTES + Double.BYTES + 6 * Integer.BYTES;
+    private static final int NO_DATE = Integer.MIN_VALUE;
+
+    private CatalogSnapshots() {
+    }
+
+    /**
+     * Starts a snapshot that becomes visible under {@code target} only once committed, so a
+     * snapshot file is always either complete or absent.
+     */
+    static Writer create(Path target) {
+        return new Writer(target);
+    }
+
+    static void read(Path snapshot, IoConsumer<Product> consumer) throws IOException {
+        MappedByteBuffer in;
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()); // stays valid after the channel closes
+        }
+        int magic = in.capacity() < HEADER_BYTES ? 0 : in.getInt();
+        if (magic != MAGIC) {
+            throw new IOException("Not a catalog snapshot: " + snapshot);
+        }
+        int rows = in.getInt();
+        int nameBytes = in.getInt();
+        String[] categories = new String[in.getInt()];
+        for (int i = 0; i < categories.length; i++) {
+            byte[] bytes = new byte[in.getInt()];
+            in.get(bytes);
+            categories[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        int ids = in.position();
+        int versions = ids + rows * Long.BYTES;
+        int prices = versions + rows * Long.BYTES;
+        int stocks = prices + rows * Double.BYTES;
+        int categoryCodes = stocks + rows * Integer.BYTES;
+        int expirations = categoryCodes + rows * Integer.BYTES;
+        int creations = expirations + rows * Integer.BYTES;
+        int updates = creations + rows * Integer.BYTES;
+        int nameLengths = updates + rows * Integer.BYTES;
+        int names = nameLengths + rows * Integer.BYTES;
+        if (in.capacity() != names + nameBytes) {
+            throw new IOException("Truncated catalog snapshot: " + snapshot);
+        }
+
+        Map<Integer, LocalDate> dates = new HashMap<>();
+        byte[] scratch = new byte[256];
+        int nameOffset = names;
+        for (int row = 0; row < rows; row++) {
+            int length = in.getInt(nameLengths + row * Integer.BYTES);
+            String name = null;
+            if (length >= 0) {
+                if (length > scratch.length) {
+                    scratch = new byte[length];
+                }
+                in.get(nameOffset, scratch, 0, length);
+                name = new String(scratch, 0, length, StandardCharsets.UTF_8);
+                nameOffset += length;
+            }
+            int category = in.getInt(categoryCodes + row * Integer.BYTES);
+            consumer.accept(new Product(
+                    in.getLong(ids + row * Long.BYTES),
+                    name,
+                    category < 0 ? null : categories[category],
+                    in.getDouble(prices + row * Double.BYTES),
+                    date(in.getInt(expirations + row * Integer.BYTES), dates),
+                    in.getInt(stocks + row * Integer.BYTES),
+                    date(in.getInt(creations + row * Integer.BYTES), dates),
+                    date(in.getInt(updates + row * Integer.BYTES), dates),
+                    in.getLong(versions + row * Long.BYTES)));
+        }
+    }
+
+    private static LocalDate date(int epochDay, Map<Integer, LocalDate> dates) {
+        return epochDay == NO_DATE ? null : dates.computeIfAbsent(epochDay, LocalDate::ofEpochDay);
+    }
+
+    private static int epochDay(LocalDate date) {
+        return date == null ? NO_DATE : Math.toIntExact(date.toEpochDay());
+    }
+
+    /**
+     * Collects products, which must arrive in increasing id order, into growable primitive
+     * columns, and writes them to a temporary file on {@link #commit()}.
+     */
+    static final class Writer implements Closeable {
+
+        private final Path target;
+        private final Path temporary;
+        private final Map<String, Integer> categoryCodes = new LinkedHashMap<>();
+
+        private int rows;
+        private long[] ids = new long[1024];
+        private long[] versions = new long[1024];
+        private double[] prices = new double[1024];
+        private int[] stocks = new int[1024];
+        private int[] categories = new int[1024];
+        private int[] expirations = new int[1024];
+        private int[] creations = new int[1024];
+        private int[] updates = new int[1024];
+        private int[] nameLengths = new int[1024];
+        private byte[] names = new byte[16 * 1024];
+        private int nameBytes;
+        private boolean committed;
+
+        private Writer(Path target) {
+            this.target = target;
+            this.temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        }
+
+        void add(Product product) {
+            if (rows == ids.length) {
+                grow();
+            }
+            ids[rows] = product.getId();
+            versions[rows] = product.getVersion();
+            prices[rows] = product.getUnitPrice();
+            stocks[rows] = product.getQuantityInStock();
+            categories[rows] = product.getCategory() == null ? -1
+                    : categoryCodes.computeIfAbsent(product.getCategory(), c -> categoryCodes.size());
+            expirations[rows] = epochDay(product.getExpirationDate());
+            creations[rows] = epochDay(product.getCreationDate());
+            updates[rows] = epochDay(product.getUpdateDate());
+            if (product.getName() == null) {
+                nameLengths[rows] = -1;
+            } else {
+                byte[] name = product.getName().getBytes(StandardCharsets.UTF_8);
+                if (nameBytes + name.length > names.length) {
+                    names = Arrays.copyOf(names, Math.max(names.length * 2, nameBytes + name.length));
+                }
+                System.arraycopy(name, 0, names, nameBytes, name.length);
+                nameBytes += name.length;
+                nameLengths[rows] = name.length;
+            }
+            rows++;
+        }
+
+        // Writes the columns through a mapping, fsyncs the file, moves it into place and fsyncs the directory
+        void commit() throws IOException {
+            List<byte[]> dictionary = new ArrayList<>(categoryCodes.size());
+            long size = HEADER_BYTES + (long) rows * FIXED_ROW_BYTES + nameBytes;
+            for (String category : categoryCodes.keySet()) {
+                byte[] bytes = category.getBytes(StandardCharsets.UTF_8);
+                dictionary.add(bytes);
+                size += Integer.BYTES + bytes.length;
+            }
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("A snapshot of " + rows + " products does not fit in a single mapping");
+            }
+
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                out.putInt(MAGIC).putInt(rows).putInt(nameBytes).putInt(dictionary.size());
+                for (byte[] category : dictionary) {
+                    out.putInt(category.length).put(category);
+                }
+                for (long[] column : List.of(ids, versions)) {
+                    out.asLongBuffer().put(column, 0, rows);
+                    out.position(out.position() + rows * Long.BYTES);
+                }
+                out.asDoubleBuffer().put(prices, 0, rows);
+                out.position(out.position() + rows * Double.BYTES);
+                for (int[] column : List.of(stocks, categories, expirations, creations, updates, nameLengths)) {
+                    out.asIntBuffer().put(column, 0, rows);
+                    out.position(out.position() + rows * Integer.BYTES);
+                }
+                out.put(names, 0, nameBytes);
+                out.force();
+            }
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            committed = true;
+            PersistenceFiles.syncDirectory(target.getParent()); // before the files it replaces are deleted
+        }
+
+        // Discards an uncommitted snapshot
+        @Override
+        public void close() throws IOException {
+            if (!committed) {
+                Files.deleteIfExists(temporary);
+            }
+        }
+
+        private void grow() {
+            int capacity = ids.length * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            versions = Arrays.copyOf(versions, capacity);
+            prices = Arrays.copyOf(prices, capacity);
+            stocks = Arrays.copyOf(stocks, capacity);
+            categories = Arrays.copyOf(categories, capacity);
+            expirations = Arrays.copyOf(expirations, capacity);
+            creations = Arrays.copyOf(creations, capacity);
+            updates = Arrays.copyOf(updates, capacity);
+            nameLengths = Arrays.copyOf(nameLengths, capacity);
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.encora.esteban.inventory.manager.be.persistence;
+
+import com.encora.esteban.inventory.manager.be.service.ChangeJournal;
+import com.encora.esteban.inventory.manager.be.service.JournalFailedException;
+import com.encora.esteban.inventory.manager.be.store.ProductChange;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedTransferQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Append-only write-ahead log of catalog changes with group commit.
+ *
+ * Writers only enqueue their change on a lock-free queue. A single writer thread drains the
+ * queue, numbers the changes, appends the whole batch to the current segment file and fsyncs
+ * it once; every writer waiting on {@link #sync()} is released by that one fsync. The segment
+ * is rotated once it grows past the configured size, and closed segments are folded into
+ * snapshots by {@link CatalogPersistence}.
+ *
+ * A failed write fails the whole log: the file may hold part of the batch, so nothing after it
+ * could be replayed reliably. Every pending and later sync fails, and writes are refused
+ * ({@link #ensureWritable()}) until the log is reopened by a restart, which recovers the
+ * changes that were durable.
+ */
+@Slf4j
+public class ChangeLog implements ChangeJournal, Closeable {
+
+    private final Path directory;
+    private final ObjectWriter writer;
+    private final long maxSegmentBytes;
+    private final IoFunction<Path, FileChannel> opener;
+
+    private final LinkedTransferQueue<Object> queue = new LinkedTransferQueue<>();
+    // Changes handed to append() and changes fsynced; equal when nothing is pending
+    private final AtomicLong appended = new AtomicLong();
+    private volatile long written;
+    // Completed by the first flush that starts after it was handed out
+    private final AtomicReference<CompletableFuture<Void>> nextFlush = new AtomicReference<>(new CompletableFuture<>());
+    private final Thread writerThread;
+    private volatile boolean running = true;
+    private volatile Throwable failure; // the write error that failed the log, set once by the writer thread
+
+    // Owned by the writer thread
+    private long sequence;
+    private FileChannel segment;
+    private long segmentBytes;
+    private volatile long currentSegmentStart;
+
+    /**
+     * Opens a new segment after the given sequence number (the last one recovered) and starts
+     * the writer thread.
+     */
+    public ChangeLog(Path directory, ObjectMapper mapper, long maxSegmentBytes, long lastSequence) throws IOException {
+        this(directory, mapper, maxSegmentBytes, lastSequence, path -> FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE));
+    }
+
+    // Opens segment files through the given function, e.g. to inject I/O errors in tests
+    ChangeLog(Path directory, ObjectMapper mapper, long maxSegmentBytes, long lastSequence,
+              IoFunction<Path, FileChannel> opener) throws IOException {
+        this.directory = directory;
+        this.writer = mapper.writer();
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.opener = opener;
+        this.sequence = lastSequence;
+        openSegment();
+
+        writerThread = new Thread(this::run, "change-log-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    @Override
+    public void append(ProductChange change) {
+        appended.incrementAndGet();
+        queue.add(change);
+    }
+
+    /**
+     * The future is read after the caller's changes were enqueued, and the writer swaps in a
+     * fresh future before it drains the queue, so the flush that completes it has written them.
+     * With nothing pending no flush may ever come, so the caller is released at once.
+     */
+    @Override
+    public CompletableFuture<Void> sync() {
+        CompletableFuture<Void> flush = nextFlush.get();
+        Throwable failed = failure;
+        if (failed != null) {
+            return CompletableFuture.failedFuture(failed);
+        }
+        return written == appended.get() ? CompletableFuture.completedFuture(null) : flush;
+    }
+
+    @Override
+    public void ensureWritable() {
+        Throwable failed = failure;
+        if (failed != null) {
+            throw new JournalFailedException("The change log failed; writes are refused until it is reopened", failed);
+        }
+    }
+
+    /**
+     * Closes the current segment, if it holds any change, and starts a new one.
+     *
+     * @return completes with the first sequence number of the segment written to from now on;
+     *         every segment starting before it is closed
+     */
+    public CompletableFuture<Long> rotate() {
+        Rotation rotation = new Rotation();
+        queue.add(rotation);
+        return rotation.done;
+    }
+
+    public long currentSegmentStart() {
+        return currentSegmentStart;
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure == null) {
+            segment.force(false);
+        }
+        segment.close();
+    }
+
+    private void run() {
+        List<Object> batch = new ArrayList<>();
+        while (running || !queue.isEmpty()) {
+            Object first;
+            try {
+                first = queue.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                continue;
+            }
+            if (first == null) {
+                continue;
+            }
+            // The last round finds the queue empty and only releases writers that raced its swap
+            do {
+                CompletableFuture<Void> flush = nextFlush.getAndSet(new CompletableFuture<>());
+                batch.clear();
+                if (first != null) {
+                    batch.add(first);
+                    first = null;
+                }
+                queue.drainTo(batch);
+                Throwable failed = failure;
+                if (failed == null) {
+                    try {
+                        write(batch);
+                    } catch (IOException | RuntimeException e) {
+                        log.error("Could not write {} changes to the change log; it refuses writes until reopened",
+                                batch.size(), e);
+                        failure = e;
+                        failed = e;
+                    }
+                }
+                if (failed == null) {
+                    flush.complete(null);
+                } else {
+                    // Nothing after a failed write is written, so no later sync can vouch for the changes it lost
+                    for (Object item : batch) {
+                        if (item instanceof Rotation rotation) {
+                            rotation.done.completeExceptionally(failed);
+                        }
+                    }
+                    flush.completeExceptionally(failed);
+                }
+            } while (!batch.isEmpty());
+        }
+    }
+
+    private void write(List<Object> batch) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        long changes = 0;
+        for (Object item : batch) {
+            if (item instanceof ProductChange change) {
+                writer.writeValue(buffer, change.withSequence(++sequence));
+                buffer.write('\n');
+                changes++;
+            } else if (item instanceof Rotation rotation) {
+                flush(buffer);
+                if (segmentBytes > 0) {
+                    segment.force(false);
+                    segment.close();
+                    openSegment();
+                }
+                rotation.done.complete(currentSegmentStart);
+            }
+        }
+        flush(buffer);
+        written += changes; // only the writer thread updates it
+        if (segmentBytes >= maxSegmentBytes) {
+            segment.close();
+            openSegment();
+        }
+    }
+
+    private void flush(ByteArrayOutputStream buffer) throws IOException {
+        if (buffer.size() == 0) {
+            return;
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(buffer.toByteArray());
+        while (bytes.hasRemaining()) {
+            segmentBytes += segment.write(bytes);
+        }
+        segment.force(false);
+        buffer.reset();
+    }
+
+    private void openSegment() throws IOException {
+        currentSegmentStart = sequence + 1;
+        segment = opener.apply(PersistenceFiles.segment(directory, currentSegmentStart));
+        PersistenceFiles.syncDirectory(directory); // the segment's fsyncs do not cover its directory entry
+        segmentBytes = 0;
+    }
+
+    private static final class Rotation {
+        final CompletableFuture<Long> done = new CompletableFuture<>();
+    }
+}
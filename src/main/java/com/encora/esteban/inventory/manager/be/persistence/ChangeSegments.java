@@ -0,0 +1,53 @@
+package com.encora.esteban.inventory.manager.be.persistence;
+
+import com.encora.esteban.inventory.manager.be.store.ProductChange;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Reads change-log segments: one JSON {@link ProductChange} per line.
+ */
+@Slf4j
+final class ChangeSegments {
+
+    private ChangeSegments() {
+    }
+
+    /**
+     * Feeds every change in the segment to the consumer, in log order. A crash can leave the
+     * last line half-written; that line is skipped, since its writer was never acknowledged.
+     *
+     * @throws IOException if any other line is unreadable
+     */
+    static void read(Path segment, ObjectMapper mapper, IoConsumer<ProductChange> consumer) throws IOException {
+        ObjectReader reader = mapper.readerFor(ProductChange.class);
+        try (BufferedReader lines = Files.newBufferedReader(segment, StandardCharsets.UTF_8)) {
+            String line = lines.readLine();
+            while (line != null) {
+                String next = lines.readLine();
+                if (!line.isEmpty()) {
+                    ProductChange change;
+                    try {
+                        change = reader.readValue(line);
+                    } catch (JsonProcessingException e) {
+                        if (next != null) {
+                            throw new IOException("Corrupt change in " + segment, e);
+                        }
+                        log.warn("Skipping torn last change in {}", segment);
+                        break;
+                    }
+                    consumer.accept(change);
+                }
+                line = next;
+            }
+        }
+    }
+}
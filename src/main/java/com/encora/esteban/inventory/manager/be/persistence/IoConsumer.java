@@ -0,0 +1,9 @@
+package com.encora.esteban.inventory.manager.be.persistence;
+
+import java.io.IOException;
+
+// A consumer that may fail with an I/O error, for callbacks that write files
+@FunctionalInterface
+interface IoConsumer<T> {
+    void accept(T value) throws IOException;
+}
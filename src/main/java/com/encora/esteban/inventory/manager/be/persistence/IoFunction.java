@@ -0,0 +1,9 @@
+package com.encora.esteban.inventory.manager.be.persistence;
+
+import java.io.IOException;
+
+// A function that may fail with an I/O error, e.g. one that opens a file
+@FunctionalInterface
+interface IoFunction<T, R> {
+    R apply(T value) throws IOException;
+}
@@ -0,0 +1,80 @@
+package com.encora.esteban.inventory.manager.be.persistence;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Names of the files in the data directory. Both kinds carry a zero-padded sequence number,
+ * so they sort by name in log order:
+ * {@code changes-<first sequence>.log} holds changes starting at that sequence number, and
+ * {@code snapshot-<last sequence>.bin} holds the catalog after that sequence number.
+ */
+final class PersistenceFiles {
+
+    private static final String SEGMENT_PREFIX = "changes-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+
+    private PersistenceFiles() {
+    }
+
+    static Path segment(Path directory, long firstSequence) {
+        return directory.resolve(SEGMENT_PREFIX + pad(firstSequence) + SEGMENT_SUFFIX);
+    }
+
+    static Path snapshot(Path directory, long lastSequence) {
+        return directory.resolve(SNAPSHOT_PREFIX + pad(lastSequence) + SNAPSHOT_SUFFIX);
+    }
+
+    static List<Path> segments(Path directory) throws IOException {
+        return list(directory, SEGMENT_PREFIX, SEGMENT_SUFFIX);
+    }
+
+    static List<Path> snapshots(Path directory) throws IOException {
+        return list(directory, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+    }
+
+    static Optional<Path> latestSnapshot(Path directory) throws IOException {
+        List<Path> snapshots = snapshots(directory);
+        return snapshots.isEmpty() ? Optional.empty() : Optional.of(snapshots.get(snapshots.size() - 1));
+    }
+
+    /**
+     * Makes the directory's entries durable: files created, renamed or deleted in it. Forcing a
+     * file only covers its contents, so after a power loss a rename could be lost while a later
+     * delete survives.
+     */
+    static void syncDirectory(Path directory) throws IOException {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+
+    // The sequence number in a segment or snapshot file name
+    static long sequence(Path file) {
+        String name = file.getFileName().toString();
+        String digits = name.substring(name.indexOf('-') + 1, name.indexOf('.'));
+        return Long.parseLong(digits);
+    }
+
+    private static List<Path> list(Path directory, String prefix, String suffix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .filter(f -> f.getFileName().toString().startsWith(prefix) && f.getFileName().toString().endsWith(suffix))
+                    .sorted(Comparator.comparing(f -> f.getFileName().toString()))
+                    .toList();
+        }
+    }
+
+    private static String pad(long sequence) {
+        return String.format("%020d", sequence);
+    }
+}
@@ -0,0 +1,25 @@
+package com.encora.esteban.inventory.manager.be.persistence;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "inventory.persistence")
+public class PersistenceProperties {
+
+    // Off by default: the catalog then lives in memory only, seeded with the demo products
+    private boolean enabled = false;
+
+    // Holds the change-log segments and snapshots
+    private Path directory = Path.of("data");
+
+    // A segment is closed, and becomes eligible for compaction, once it grows past this size
+    private DataSize maxSegmentSize = DataSize.ofMegabytes(64);
+
+    // How often closed segments are folded into a new snapshot; bounds how much log recovery replays
+    private Duration snapshotInterval = Duration.ofMinutes(5);
+}
@@ -0,0 +1,44 @@
+package com.encora.esteban.inventory.manager.be.replication;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * Request gate of a follower: reads are served from the local copy while it is in step with
+ * the leader and answered 503 otherwise; writes are redirected to the leader with 307, which
+ * clients follow with the same method and body.
+ */
+public class FollowerRequests implements HandlerInterceptor {
+
+    private static final Set<String> READS = Set.of("GET", "HEAD", "OPTIONS");
+
+    private final ReplicationFollower follower;
+
+    public FollowerRequests(ReplicationFollower follower) {
+        this.follower = follower;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws IOException {
+        if (READS.contains(request.getMethod())) {
+            if (follower.isServing()) {
+                return true;
+            }
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Not in step with the leader");
+            return false;
+        }
+        String target = follower.leaderUrl().resolve(request.getRequestURI()).toString();
+        if (request.getQueryString() != null) {
+            target += "?" + request.getQueryString();
+        }
+        response.setStatus(HttpServletResponse.SC_TEMPORARY_REDIRECT);
+        response.setHeader(HttpHeaders.LOCATION, target);
+        return false;
+    }
+}
@@ -0,0 +1,263 @@
+package com.encora.esteban.inventory.manager.be.replication;
+
+import com.encora.esteban.inventory.manager.be.model.Product;
+import com.encora.esteban.inventory.manager.be.service.ProductService;
+import com.encora.esteban.inventory.manager.be.store.ProductChange;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps this instance's catalog a copy of the leader's by following the leader's change feed
+ * ({@code GET /inventory/products/changes}) and applying every change it ships, in order.
+ *
+ * The feed is opened before the catalog is copied from {@code GET /inventory/products/export},
+ * so every change the copy may have missed follows on the stream; replaying one that the copy
+ * already holds is harmless, as changes carry full after-images. The feed is read on a thread
+ * of its own and queued while the copy runs, so the leader never sees this stream stall.
+ *
+ * After a disconnect the feed is resumed from the last applied event; when the leader can no
+ * longer resume it (a {@code reset} event) the catalog is copied again.
+ *
+ * The leader sends a heartbeat at least every 15 seconds, so the time since it was last heard
+ * from bounds how far behind this copy can be. Reads are only served while that stays under
+ * the configured maximum (see {@link FollowerRequests}).
+ */
+@Slf4j
+public class ReplicationFollower implements Closeable {
+
+    private final ProductService productService;
+    private final ObjectMapper mapper;
+    private final URI leader;
+    private final Duration maxStaleness;
+    private final Duration retryDelay;
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+    private final Thread thread = new Thread(this::run, "replication");
+    private volatile boolean running = true;
+    private volatile InputStream stream; // the open change feed, closed to stop following
+    private volatile boolean synced;
+    private volatile long lastContact = System.nanoTime();
+    private volatile long appliedSequence; // the leader's sequence of the last change applied here
+    private String lastEventId; // confined to the replication thread
+
+    public ReplicationFollower(ProductService productService, ObjectMapper mapper, ReplicationProperties properties,
+                               MeterRegistry registry) {
+        this.productService = productService;
+        this.mapper = mapper;
+        this.leader = properties.getLeaderUrl();
+        this.maxStaleness = properties.getMaxStaleness();
+        this.retryDelay = properties.getRetryDelay();
+        thread.setDaemon(true);
+        Gauge.builder("inventory.replication.sequence", this, follower -> follower.appliedSequence)
+                .description("Leader change sequence applied by this follower")
+                .register(registry);
+        TimeGauge.builder("inventory.replication.staleness", this, TimeUnit.NANOSECONDS, ReplicationFollower::staleness)
+                .description("Time since the leader was last heard from")
+                .register(registry);
+        Gauge.builder("inventory.replication.serving", this, follower -> follower.isServing() ? 1 : 0)
+                .description("1 while this follower serves reads")
+                .register(registry);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    public URI leaderUrl() {
+        return leader;
+    }
+
+    // Reads may be served: the catalog has been copied and the leader was heard from recently
+    public boolean isServing() {
+        return synced && staleness() <= maxStaleness.toNanos();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        thread.interrupt();
+        InputStream open = stream;
+        if (open != null) {
+            try {
+                open.close(); // unblocks the feed reader
+            } catch (IOException e) {
+                log.debug("Closing the change feed failed: {}", e.toString());
+            }
+        }
+    }
+
+    private long staleness() {
+        return System.nanoTime() - lastContact;
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                follow();
+            } catch (IOException | RuntimeException e) {
+                if (running) {
+                    log.warn("Replication from {} interrupted, retrying in {}: {}", leader, retryDelay, e.toString());
+                }
+            } catch (InterruptedException e) {
+                return; // closed
+            }
+            try {
+                Thread.sleep(retryDelay.toMillis());
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    // Applies the feed until it ends or fails
+    private void follow() throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(leader.resolve("/inventory/products/changes"))
+                .header("Accept", "text/event-stream");
+        if (lastEventId != null) {
+            request.header("Last-Event-ID", lastEventId);
+        }
+        InputStream body = open(request.build());
+        stream = body;
+        try (BufferedReader lines = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            if (!running) {
+                return;
+            }
+            lastContact = System.nanoTime();
+            // Keeps draining the feed while a copy runs here; a stream the leader cannot send to
+            // would be dropped or reset, and the reconnect would start another copy
+            FeedReader feed = new FeedReader(lines);
+            Thread reader = new Thread(feed, "replication-feed");
+            reader.setDaemon(true);
+            reader.start();
+            if (lastEventId == null) {
+                resync(); // the feed is already open, so changes made during the copy are queued on it
+            }
+            Event event;
+            while ((event = feed.events.take()) != FeedReader.END) {
+                dispatch(event.id(), event.type(), event.data());
+            }
+            if (feed.failure != null) {
+                throw feed.failure;
+            }
+        } finally {
+            stream = null;
+        }
+    }
+
+    private void dispatch(String id, String type, String data) throws IOException, InterruptedException {
+        if (type.equals("reset")) {
+            resync();
+            appliedSequence = mapper.readTree(data).path("sequence").asLong();
+        } else {
+            ProductChange change = mapper.readValue(data, ProductChange.class);
+            productService.replicate(change);
+            appliedSequence = change.getSequence();
+        }
+        lastEventId = id;
+    }
+
+    // Replaces the catalog with a copy of the leader's
+    private void resync() throws IOException, InterruptedException {
+        synced = false;
+        lastEventId = null; // a failed copy must not be resumed
+        InputStream body = open(HttpRequest.newBuilder(leader.resolve("/inventory/products/export")).build());
+        int copied = 0;
+        productService.beginRestore();
+        try (BufferedReader lines = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = lines.readLine()) != null) {
+                if (!line.isBlank()) {
+                    Product product = mapper.readValue(line, Product.class);
+                    productService.applyChange(new ProductChange(0, ProductChange.Type.CREATE, product.getId(), product));
+                    copied++;
+                }
+            }
+        } finally {
+            productService.finishRestore().join();
+        }
+        synced = true;
+        log.info("Copied {} products from leader {}", copied, leader);
+    }
+
+    private InputStream open(HttpRequest request) throws IOException, InterruptedException {
+        HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        if (response.statusCode() != 200) {
+            response.body().close();
+            throw new IOException(request.uri() + " answered " + response.statusCode());
+        }
+        return response.body();
+    }
+
+    private record Event(String id, String type, String data) {
+    }
+
+    // Parses the feed's events into a queue until it ends, then queues END
+    private final class FeedReader implements Runnable {
+
+        static final Event END = new Event(null, null, null);
+
+        // Unbounded: it holds the changes made during one copy, which the leader cannot
+        // buffer for a stream that stops reading
+        final BlockingQueue<Event> events = new LinkedBlockingQueue<>();
+        private final BufferedReader lines;
+        volatile IOException failure;
+
+        FeedReader(BufferedReader lines) {
+            this.lines = lines;
+        }
+
+        @Override
+        public void run() {
+            String id = null;
+            String type = null;
+            StringBuilder data = new StringBuilder();
+            try {
+                String line;
+                while ((line = lines.readLine()) != null) {
+                    lastContact = System.nanoTime(); // heartbeats are comment lines, which need nothing else
+                    if (line.isEmpty()) {
+                        if (type != null) {
+                            events.add(new Event(id, type, data.toString()));
+                        }
+                        id = null;
+                        type = null;
+                        data.setLength(0);
+                    } else if (line.startsWith("id:")) {
+                        id = value(line, "id:");
+                    } else if (line.startsWith("event:")) {
+                        type = value(line, "event:");
+                    } else if (line.startsWith("data:")) {
+                        data.append(data.length() > 0 ? "\n" : "").append(value(line, "data:"));
+                    }
+                }
+            } catch (IOException e) {
+                failure = e;
+            } finally {
+                events.add(END);
+            }
+        }
+    }
+
+    // A field's value; the single space after the colon is optional
+    private static String value(String line, String field) {
+        String value = line.substring(field.length());
+        return value.startsWith(" ") ? value.substring(1) : value;
+    }
+}
@@ -0,0 +1,21 @@
+package com.encora.esteban.inventory.manager.be.replication;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.net.URI;
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "inventory.replication")
+public class ReplicationProperties {
+
+    // Base URL of the leader, e.g. http://localhost:9090; unset on the leader itself
+    private URI leaderUrl;
+
+    // Reads are refused once the leader has not been heard from for this long (it sends a heartbeat every 15 s)
+    private Duration maxStaleness = Duration.ofSeconds(45);
+
+    // Wait before reconnecting after the connection to the leader fails
+    private Duration retryDelay = Duration.ofSeconds(2);
+}
@@ -0,0 +1,122 @@
+package com.encora.esteban.inventory.manager.be.service;
+
+import com.encora.esteban.inventory.manager.be.store.ProductChange;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The most recent catalog changes, numbered in the order they were applied, for clients that
+ * follow the catalog instead of polling it. Sequence numbers start at 1 with every process.
+ *
+ * A change is staged as soon as it is applied and published once it is durable, so a follower
+ * never sees a change that a crash could still undo. Only the last {@code capacity} changes are
+ * kept; a follower that falls further behind has to list the catalog again.
+ *
+ * Staging runs under the store's lock on the changed product, so it takes no lock of its own:
+ * a virtual thread waiting for one there would pin its carrier. Changes are numbered by an
+ * atomic counter and stored in their ring slot right after; publishing never passes a change
+ * that is numbered but not stored yet, and waits for one without holding the lock that readers
+ * and waiters need.
+ */
+public class ChangeFeed {
+
+    private final AtomicReferenceArray<ProductChange> ring;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition advanced = lock.newCondition();
+    private final AtomicLong staged = new AtomicLong(); // sequence of the last change applied
+    private volatile long published; // sequence of the last change made visible, never ahead of staged; written under lock
+
+    ChangeFeed(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Change feed capacity must be positive, was " + capacity);
+        }
+        this.ring = new AtomicReferenceArray<>(capacity);
+    }
+
+    // Called while the changed product is locked in the store, so each product's changes are numbered in order
+    void stage(ProductChange change) {
+        long sequence = staged.incrementAndGet();
+        ring.set(slot(sequence), change.withSequence(sequence));
+    }
+
+    // The sequence a later publish must reach to cover every change applied so far
+    long staged() {
+        return staged.get();
+    }
+
+    // Makes every change up to the sequence visible; publishing an older sequence is a no-op
+    void publish(long sequence) {
+        long target = Math.min(sequence, staged.get());
+        for (long next = published + 1; next <= target; next++) {
+            ProductChange change;
+            // A later lap's change means this one left the buffer already
+            while ((change = ring.get(slot(next))) == null || change.getSequence() < next) {
+                Thread.yield(); // numbered but not stored yet; its writer is about to
+            }
+        }
+        lock.lock();
+        try {
+            if (target > published) {
+                published = target;
+                advanced.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long lastSequence() {
+        return published;
+    }
+
+    /**
+     * The published changes after the given sequence, oldest first.
+     *
+     * @return null if some of them have already left the buffer, or if the sequence was never
+     *         published (e.g. it comes from before a restart)
+     */
+    public List<ProductChange> since(long sequence) {
+        lock.lock();
+        try {
+            if (sequence > published || sequence < staged.get() - ring.length()) {
+                return null;
+            }
+            List<ProductChange> changes = new ArrayList<>((int) (published - sequence));
+            for (long next = sequence + 1; next <= published; next++) {
+                changes.add(ring.get(slot(next)));
+            }
+            // Staging does not take the lock, so a slot may have been reused while it was read
+            return sequence < staged.get() - ring.length() ? null : changes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int slot(long sequence) {
+        return (int) (sequence % ring.length());
+    }
+
+    /**
+     * Waits until a change after the given sequence is published, or the timeout expires.
+     *
+     * @return the last published sequence
+     */
+    public long awaitAfter(long sequence, long timeout, TimeUnit unit) throws InterruptedException {
+        lock.lock();
+        try {
+            long nanos = unit.toNanos(timeout);
+            while (published <= sequence && nanos > 0) {
+                nanos = advanced.awaitNanos(nanos);
+            }
+            return published;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.encora.esteban.inventory.manager.be.service;
+
+import com.encora.esteban.inventory.manager.be.store.ProductChange;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Durable record of catalog writes, e.g. a write-ahead log.
+ */
+public interface ChangeJournal {
+
+    // Called while the changed product is locked in the store; must hand the change off without blocking
+    void append(ProductChange change);
+
+    // Completes once every change appended before this call is durable, or fails if they cannot be
+    CompletableFuture<Void> sync();
+
+    // Throws JournalFailedException once a write has failed, so that no further change is applied
+    void ensureWritable();
+}
@@ -0,0 +1,42 @@
+package com.encora.esteban.inventory.manager.be.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs {@link ProductService#sweepExpired} for the perishable categories in the background at
+ * a fixed delay, starting right away, so expired stock is taken out of listings and totals
+ * without a request.
+ */
+@Slf4j
+public class ExpirySweeper implements Closeable {
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "expiry-sweeper");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ExpirySweeper(ProductService productService, Clock clock, Duration interval, List<String> categories) {
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                productService.sweepExpired(LocalDate.now(clock), categories);
+            } catch (RuntimeException e) {
+                log.error("Expiry sweep failed; retried at the next interval", e);
+            }
+        }, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,17 @@
+package com.encora.esteban.inventory.manager.be.service;
+
+import lombok.Getter;
+
+/**
+ * A stock adjustment would have taken a product's stock below zero. Nothing was written.
+ */
+@Getter
+public class InsufficientStockException extends RuntimeException {
+
+    private final int quantityInStock;
+
+    public InsufficientStockException(Long id, int quantityInStock, long delta) {
+        super("Product " + id + " has " + quantityInStock + " in stock, cannot adjust by " + delta);
+        this.quantityInStock = quantityInStock;
+    }
+}
@@ -0,0 +1,13 @@
+package com.encora.esteban.inventory.manager.be.service;
+
+/**
+ * A write could not be made durable because the change journal failed, e.g. the disk is full.
+ * The journal then refuses every later write until it is reopened, i.e. the instance restarts
+ * and recovers what was durable.
+ */
+public class JournalFailedException extends RuntimeException {
+
+    public JournalFailedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,76 @@
+package com.encora.esteban.inventory.manager.be.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Bounds how many listings that scan the catalog run at once, so that a burst of them cannot
+ * take every core and request thread away from cheap requests such as id lookups. A listing
+ * beyond the bound waits for a slot, first come first served, for at most {@code maxWait};
+ * it is shed right away if {@code maxQueued} listings are already waiting.
+ */
+class ListingAdmission {
+
+    private final Semaphore slots;
+    private final int maxConcurrent;
+    private final int maxQueued;
+    private final long maxWaitNanos;
+    private final Counter rejected;
+
+    /**
+     * @param maxConcurrent listings that scan at the same time; 0 for one per available core
+     */
+    ListingAdmission(MeterRegistry registry, int maxConcurrent, int maxQueued, Duration maxWait) {
+        this.maxConcurrent = maxConcurrent > 0 ? maxConcurrent : Runtime.getRuntime().availableProcessors();
+        this.slots = new Semaphore(this.maxConcurrent, true);
+        this.maxQueued = maxQueued;
+        this.maxWaitNanos = maxWait.toNanos();
+        rejected = Counter.builder("inventory.listing.scans.rejected")
+                .description("Scanning listings shed because too many were running or waiting")
+                .register(registry);
+        Gauge.builder("inventory.listing.scans.active", slots, s -> this.maxConcurrent - s.availablePermits())
+                .description("Scanning listings running")
+                .register(registry);
+        Gauge.builder("inventory.listing.scans.queued", slots, Semaphore::getQueueLength)
+                .description("Scanning listings waiting for a slot")
+                .register(registry);
+    }
+
+    /**
+     * Runs the listing once a slot is free.
+     *
+     * @throws ListingRejectedException if no slot freed up in time, or too many listings wait
+     */
+    <T> T run(Supplier<T> listing) {
+        if (!acquire()) {
+            rejected.increment();
+            throw new ListingRejectedException("Too many listings scanning the catalog, limit is " + maxConcurrent);
+        }
+        try {
+            return listing.get();
+        } finally {
+            slots.release();
+        }
+    }
+
+    private boolean acquire() {
+        try {
+            if (slots.tryAcquire(0, TimeUnit.NANOSECONDS)) { // unlike tryAcquire(), never jumps the queue
+                return true;
+            }
+            if (slots.getQueueLength() >= maxQueued || maxWaitNanos <= 0) {
+                return false;
+            }
+            return slots.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
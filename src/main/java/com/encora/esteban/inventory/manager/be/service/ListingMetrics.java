@@ -0,0 +1,87 @@
+package com.encora.esteban.inventory.manager.be.service;
+
+import com.encora.esteban.inventory.manager.be.store.ProductQuery;
+import com.encora.esteban.inventory.manager.be.store.ProductSort;
+import com.encora.esteban.inventory.manager.be.store.ProductStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Usage counters for the listing options and gauges for the catalog size, published through
+ * Micrometer. Per-endpoint latency histograms come from Spring's own http.server.requests timer.
+ *
+ * Counters are registered once up front, so recording a listing is a few adder increments
+ * with no tag lookups on the request path.
+ */
+class ListingMetrics {
+
+    private final Counter nameFilter;
+    private final Counter categoryFilter;
+    private final Counter stockFilter;
+    private final Counter offsetPages;
+    private final Counter cursorPages;
+    private final Map<ProductSort, Counter> ascending = new EnumMap<>(ProductSort.class);
+    private final Map<ProductSort, Counter> descending = new EnumMap<>(ProductSort.class);
+
+    ListingMetrics(MeterRegistry registry, ProductStore store) {
+        nameFilter = filterCounter(registry, "name");
+        categoryFilter = filterCounter(registry, "category");
+        stockFilter = filterCounter(registry, "inStock");
+        offsetPages = paginationCounter(registry, "offset");
+        cursorPages = paginationCounter(registry, "cursor");
+        for (ProductSort sort : ProductSort.values()) {
+            ascending.put(sort, sortCounter(registry, sort, "asc"));
+            descending.put(sort, sortCounter(registry, sort, "desc"));
+        }
+
+        Gauge.builder("inventory.products", store, ProductStore::size)
+                .description("Products in the catalog")
+                .register(registry);
+        Gauge.builder("inventory.categories", store, s -> s.totals().getCategoryStock().size())
+                .description("Categories with at least one product")
+                .register(registry);
+        Gauge.builder("inventory.stock", store, s -> s.totals().getTotalStock())
+                .description("Units in stock across the catalog")
+                .register(registry);
+    }
+
+    void record(ProductQuery query) {
+        if (query.getName() != null) {
+            nameFilter.increment();
+        }
+        if (query.getCategory() != null) {
+            categoryFilter.increment();
+        }
+        if (query.getInStock() != null) {
+            stockFilter.increment();
+        }
+        (query.getAfter() != null ? cursorPages : offsetPages).increment();
+        (query.isDescending() ? descending : ascending).get(query.getSort()).increment();
+    }
+
+    private static Counter filterCounter(MeterRegistry registry, String filter) {
+        return Counter.builder("inventory.listing.filters")
+                .description("Product listings using each filter")
+                .tag("filter", filter)
+                .register(registry);
+    }
+
+    private static Counter paginationCounter(MeterRegistry registry, String mode) {
+        return Counter.builder("inventory.listing.pagination")
+                .description("Product listings by pagination mode")
+                .tag("mode", mode)
+                .register(registry);
+    }
+
+    private static Counter sortCounter(MeterRegistry registry, ProductSort sort, String order) {
+        return Counter.builder("inventory.listing.sort")
+                .description("Product listings by sort key and order")
+                .tag("sortBy", sort.getParam())
+                .tag("sortOrder", order)
+                .register(registry);
+    }
+}
@@ -0,0 +1,12 @@
+package com.encora.esteban.inventory.manager.be.service;
+
+/**
+ * A scanning listing was shed because the configured number of them were already running and
+ * no slot freed up in time. Nothing was computed; the request can be retried.
+ */
+public class ListingRejectedException extends RuntimeException {
+
+    public ListingRejectedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,114 @@
+package com.encora.esteban.inventory.manager.be.service;
+
+import com.encora.esteban.inventory.manager.be.model.Product;
+
+import java.util.Iterator;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * A listing as a cold {@link Flow.Publisher}: every subscriber gets its own pass over the
+ * products, pulled from the lazy listing stream only as fast as the subscriber requests them.
+ * Nothing runs between requests, so a slow consumer holds no thread and buffers no products.
+ *
+ * Products are emitted on the thread that calls {@code request}. A request made from within
+ * {@code onNext} only adds demand; the emitting loop picks it up, so the call stack never grows
+ * with the number of products.
+ */
+class ProductPublisher implements Flow.Publisher<Product> {
+
+    private final Supplier<Stream<Product>> listing;
+
+    ProductPublisher(Supplier<Stream<Product>> listing) {
+        this.listing = listing;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super Product> subscriber) {
+        ListingSubscription subscription = new ListingSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+    }
+
+    private final class ListingSubscription implements Flow.Subscription {
+
+        private final Flow.Subscriber<? super Product> subscriber;
+        private final AtomicLong demand = new AtomicLong();
+        // Number of drain requests; only the caller that raises it from zero emits
+        private final AtomicInteger pending = new AtomicInteger();
+        private Stream<Product> products; // opened by the first drain, confined to the draining thread
+        private Iterator<Product> iterator;
+        private volatile boolean done;
+
+        ListingSubscription(Flow.Subscriber<? super Product> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (done) {
+                return;
+            }
+            if (n <= 0) {
+                cancel();
+                subscriber.onError(new IllegalArgumentException("Demand must be positive, was " + n));
+                return;
+            }
+            demand.getAndAccumulate(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            done = true;
+            drain(); // closes the stream once no other thread is emitting
+        }
+
+        private void drain() {
+            if (pending.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                try {
+                    emit();
+                } catch (RuntimeException e) {
+                    if (!done) {
+                        done = true;
+                        subscriber.onError(e);
+                    }
+                }
+                if (done && products != null) {
+                    products.close();
+                    products = null;
+                }
+                missed = pending.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void emit() {
+            if (done) {
+                return;
+            }
+            if (iterator == null) {
+                products = listing.get();
+                iterator = products.iterator();
+            }
+            while (!done && demand.get() > 0) {
+                if (!iterator.hasNext()) {
+                    done = true;
+                    subscriber.onComplete();
+                    return;
+                }
+                demand.decrementAndGet();
+                subscriber.onNext(iterator.next());
+            }
+            if (!done && !iterator.hasNext()) {
+                done = true; // complete without waiting for demand that the last product does not need
+                subscriber.onComplete();
+            }
+        }
+    }
+}
@@ -1,203 +1,562 @@
 package com.encora.esteban.inventory.manager.be.service;
 
 import com.encora.esteban.inventory.manager.be.model.Product;
+import com.encora.esteban.inventory.manager.be.model.StockAdjustment;
+import com.encora.esteban.inventory.manager.be.store.InventoryTotals;
+import com.encora.esteban.inventory.manager.be.store.ProductChange;
+import com.encora.esteban.inventory.manager.be.store.ProductCursor;
+import com.encora.esteban.inventory.manager.be.store.ProductPage;
+import com.encora.esteban.inventory.manager.be.store.ProductQuery;
+import com.encora.esteban.inventory.manager.be.store.ProductSort;
+import com.encora.esteban.inventory.manager.be.store.ProductStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.util.*;
-import java.util.stream.Collectors;
-
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+@Slf4j
 @Service
 public class ProductService {
-    private final List<Product> productList = new ArrayList<>();
+    // Categories whose expired stock is cleared unless others are configured
+    public static final List<String> PERISHABLE_CATEGORIES = List.of("Food");
+
+    private final ProductStore productStore;
+    private final ListingMetrics listingMetrics;
+    private final ChangeFeed changeFeed;
+    private final SingleFlight<ListingKey, Map<String, Object>> listings;
+    private final ListingAdmission admission;
+    private volatile ChangeJournal journal;
+    private volatile boolean restoring;
 
     public ProductService() {
+        this(new SimpleMeterRegistry()); // standalone use, e.g. unit tests
+    }
+
+    public ProductService(MeterRegistry meterRegistry) {
+        this(meterRegistry, false, ProductStore.DEFAULT_PARALLEL_SCAN_THRESHOLD, 1024, 0, 64, Duration.ofSeconds(1));
+    }
+
+    // Columnar scans trade extra memory per product for faster broad filtered listings (see ProductStore)
+    @Autowired
+    public ProductService(MeterRegistry meterRegistry,
+                          @Value("${inventory.store.columnar-scans:false}") boolean columnarScans,
+                          @Value("${inventory.store.parallel-scan-threshold:50000}") int parallelScanThreshold,
+                          @Value("${inventory.change-feed.capacity:1024}") int changeFeedCapacity,
+                          @Value("${inventory.listing.max-concurrent-scans:0}") int maxConcurrentScans,
+                          @Value("${inventory.listing.max-queued-scans:64}") int maxQueuedScans,
+                          @Value("${inventory.listing.max-scan-wait:1s}") Duration maxScanWait) {
+        this.productStore = new ProductStore(columnarScans, parallelScanThreshold);
+        this.listingMetrics = new ListingMetrics(meterRegistry, productStore);
+        this.changeFeed = new ChangeFeed(changeFeedCapacity);
+        this.listings = new SingleFlight<>(Counter.builder("inventory.listing.coalesced")
+                .description("Listings answered by an identical listing already in flight")
+                .register(meterRegistry));
+        this.admission = new ListingAdmission(meterRegistry, maxConcurrentScans, maxQueuedScans, maxScanWait);
+
         // Preload some dummy data
-        productList.add(new Product(1L, "Mouse", "Electronics", 10, null, 2, LocalDate.now(), LocalDate.now()));
-        productList.add(new Product(2L, "Pants", "Clothing", 11, null, 2, LocalDate.now(), LocalDate.now()));
-        productList.add(new Product(3L, "Keyboard", "Electronics", 12, null, 4, LocalDate.now(), LocalDate.now()));
-        productList.add(new Product(4L, "Speaker", "Electronics", 12, null, 6, LocalDate.now(), LocalDate.now()));
-        productList.add(new Product(5L, "PC", "Electronics", 14, null, 2, LocalDate.now(), LocalDate.now()));
-        productList.add(new Product(6L, "Socks", "Clothing", 12, null, 4, LocalDate.now(), LocalDate.now()));
-        productList.add(new Product(7L, "Lamp", "Electronics", 10, null, 0, LocalDate.now(), LocalDate.now()));
-        productList.add(new Product(8L, "Cake", "Food", 30, LocalDate.of(2025, 4, 10), 2, LocalDate.now(), LocalDate.now()));
-        productList.add(new Product(9L, "Pasta", "Food", 20, LocalDate.of(2025, 4, 9), 2, LocalDate.now(), LocalDate.now()));
-        productList.add(new Product(10L, "Tacos", "Food", 300, LocalDate.of(2025, 5, 7), 4, LocalDate.now(), LocalDate.now()));
-        productList.add(new Product(11L, "Hat", "Clothing", 14, null, 6, LocalDate.now(), LocalDate.now()));
+        productStore.load(new Product(1L, "Mouse", "Electronics", 10, null, 2, LocalDate.now(), LocalDate.now()));
+        productStore.load(new Product(2L, "Pants", "Clothing", 11, null, 2, LocalDate.now(), LocalDate.now()));
+        productStore.load(new Product(3L, "Keyboard", "Electronics", 12, null, 4, LocalDate.now(), LocalDate.now()));
+        productStore.load(new Product(4L, "Speaker", "Electronics", 12, null, 6, LocalDate.now(), LocalDate.now()));
+        productStore.load(new Product(5L, "PC", "Electronics", 14, null, 2, LocalDate.now(), LocalDate.now()));
+        productStore.load(new Product(6L, "Socks", "Clothing", 12, null, 4, LocalDate.now(), LocalDate.now()));
+        productStore.load(new Product(7L, "Lamp", "Electronics", 10, null, 0, LocalDate.now(), LocalDate.now()));
+        productStore.load(new Product(8L, "Cake", "Food", 30, LocalDate.of(2025, 4, 10), 2, LocalDate.now(), LocalDate.now()));
+        productStore.load(new Product(9L, "Pasta", "Food", 20, LocalDate.of(2025, 4, 9), 2, LocalDate.now(), LocalDate.now()));
+        productStore.load(new Product(10L, "Tacos", "Food", 300, LocalDate.of(2025, 5, 7), 4, LocalDate.now(), LocalDate.now()));
+        productStore.load(new Product(11L, "Hat", "Clothing", 14, null, 6, LocalDate.now(), LocalDate.now()));
+        productStore.setChangeListener(this::onChange);
     }
 
     // Fetch all products with optional filtering and pagination
     public Map<String, Object> getProducts(String name, String category, Boolean inStock, int page, int size, String sortBy, String sortOrder) {
-        List<Product> filteredProducts = productList.stream()
-                .filter(product -> (name == null || product.getName().toLowerCase().contains(name.toLowerCase())))
-                .filter(product -> (category == null || product.getCategory().equalsIgnoreCase(category)))
-                .filter(product -> (inStock == null || (inStock ? product.getQuantityInStock() > 0 : product.getQuantityInStock() == 0)))
-                .collect(Collectors.toList());
-
-        // ✅ Apply Sorting BEFORE Pagination
-        Comparator<Product> comparator = Comparator.comparing(Product::getName); // Default sorting by name
-
-        if ("category".equals(sortBy)) {
-            comparator = Comparator.comparing(Product::getCategory);
-        } else if ("price".equals(sortBy)) {
-            comparator = Comparator.comparingDouble(Product::getUnitPrice);
-        } else if ("stock".equals(sortBy)) {
-            comparator = Comparator.comparingInt(Product::getQuantityInStock);
-        } else if ("expiration".equals(sortBy)) {
-            comparator = Comparator.comparing(Product::getExpirationDate, Comparator.nullsLast(Comparator.naturalOrder())); // Handle null dates
-        }
+        ProductQuery query = buildQuery(name, category, inStock, sortBy, sortOrder);
+        return listProducts(query, page * size, page, size);
+    }
 
-        if ("desc".equals(sortOrder)) {
-            comparator = comparator.reversed();
-        }
+    /**
+     * Keyset pagination: lists the page that follows the cursor returned with a previous page.
+     * The cursor must come from a listing with the same sortBy and sortOrder.
+     *
+     * @throws IllegalArgumentException if the cursor is malformed or belongs to another ordering
+     */
+    public Map<String, Object> getProductsAfter(String cursor, String name, String category, Boolean inStock, int page, int size, String sortBy, String sortOrder) {
+        ProductQuery query = buildQuery(name, category, inStock, sortBy, sortOrder);
+        query = query.withAfter(ProductCursor.decode(cursor, query));
+        return listProducts(query, 0, page, size);
+    }
+
+    /**
+     * Checks a cursor without listing anything, e.g. before answering a conditional request.
+     *
+     * @throws IllegalArgumentException if the cursor is malformed or belongs to another ordering
+     */
+    public void checkCursor(String cursor, String sortBy, String sortOrder) {
+        ProductCursor.decode(cursor, buildQuery(null, null, null, sortBy, sortOrder));
+    }
 
-        filteredProducts.sort(comparator); // ✅ Sorting applied before pagination
+    // Every matching product in listing order, produced lazily for streaming exports
+    public Stream<Product> streamProducts(String name, String category, Boolean inStock, String sortBy, String sortOrder) {
+        return productStore.stream(buildQuery(name, category, inStock, sortBy, sortOrder));
+    }
 
-        // ✅ Apply Pagination AFTER Sorting
-        int totalProducts = filteredProducts.size();
-        int totalPages = (int) Math.ceil((double) totalProducts / size);
+    /**
+     * The same listing as {@link #streamProducts}, as a publisher that produces products only on
+     * demand. Each subscriber lists the catalog as it is when it first requests products.
+     */
+    public Flow.Publisher<Product> publishProducts(String name, String category, Boolean inStock, String sortBy, String sortOrder) {
+        ProductQuery query = buildQuery(name, category, inStock, sortBy, sortOrder); // rejects bad parameters now
+        return new ProductPublisher(() -> productStore.stream(query));
+    }
 
-        // ✅ ADD NEW CATEGORY-BASED TOTALS (FULL INVENTORY, NOT PAGINATED)
-        Map<String, Integer> categoryStock = new HashMap<>();
-        Map<String, Double> categoryValue = new HashMap<>();
+    private static ProductQuery buildQuery(String name, String category, Boolean inStock, String sortBy, String sortOrder) {
+        return ProductQuery.builder()
+                .name(name)
+                .category(category)
+                .inStock(inStock)
+                .sort(ProductSort.fromParam(sortBy))
+                .descending("desc".equals(sortOrder))
+                .build();
+    }
 
-        int totalStock = 0; // ✅ Initialize totalStock here
-        double totalValue = 0.0; // ✅ Initialize totalValue here
+    /**
+     * Identical listings requested while one is being built at the same catalog version share
+     * its result, which callers must not modify. Listings that scan the catalog are admitted
+     * through {@link ListingAdmission}; id lookups and index walks never wait for them.
+     *
+     * @throws ListingRejectedException if the listing scans and too many scans are running
+     */
+    private Map<String, Object> listProducts(ProductQuery query, int offset, int page, int size) {
+        listingMetrics.record(query);
+        ListingKey key = new ListingKey(query, offset, page, size, productStore.version());
+        return listings.run(key, () -> productStore.scans(query)
+                ? admission.run(() -> buildListing(query, offset, page, size))
+                : buildListing(query, offset, page, size));
+    }
 
-        for (Product product : productList) { // ✅ Loop through ALL products, not just paginated ones
-            String productCategory = product.getCategory(); // 🔄 Renamed to productCategory
-            int stock = product.getQuantityInStock();
-            double value = product.getUnitPrice() * stock;
+    // Includes the catalog version, so a caller never gets a listing started before its own writes
+    private record ListingKey(ProductQuery query, int offset, int page, int size, long catalogVersion) {
+    }
 
-            categoryStock.put(productCategory, categoryStock.getOrDefault(productCategory, 0) + stock);
-            categoryValue.put(productCategory, categoryValue.getOrDefault(productCategory, 0.0) + value);
+    private Map<String, Object> buildListing(ProductQuery query, int offset, int page, int size) {
 
-            totalStock += stock;
-            totalValue += value;
-        }
+        // Sorting and pagination are served by the store's indexes: only the requested page is ordered
+        ProductPage result = productStore.query(query, offset, size);
+        List<Product> paginatedProducts = result.getProducts();
 
+        int totalProducts = result.getTotalProducts();
+        int totalPages = (int) Math.ceil((double) totalProducts / size);
 
-        int fromIndex = page * size;
-        int toIndex = Math.min(fromIndex + size, totalProducts);
-        List<Product> paginatedProducts = (fromIndex >= totalProducts) ? new ArrayList<>() : filteredProducts.subList(fromIndex, toIndex);
+        // A full page may be followed by more products; the cursor lets the client fetch them without an offset
+        String nextCursor = (size > 0 && paginatedProducts.size() == size)
+                ? ProductCursor.encode(query, paginatedProducts.get(paginatedProducts.size() - 1))
+                : null;
 
-        // ✅ Debugging Statements (Print Values to Check)
-        System.out.println("DEBUG: Total Products = " + totalProducts);
-        System.out.println("DEBUG: Total Pages = " + totalPages);
-        System.out.println("DEBUG: Total Stock = " + totalStock);
-        System.out.println("DEBUG: Total Value = " + totalValue);
-        System.out.println("DEBUG: Paginated Products Count = " + paginatedProducts.size());
-        System.out.println("DEBUG: Category Stock Map = " + categoryStock);
-        System.out.println("DEBUG: Category Value Map = " + categoryValue);
+        // Category-based totals cover the FULL inventory, kept as running aggregates by the store
+        InventoryTotals totals = productStore.totals();
+        int totalStock = totals.getTotalStock();
+        double totalValue = totals.getTotalValue();
+        Map<String, Integer> categoryStock = totals.getCategoryStock();
+        Map<String, Double> categoryValue = totals.getCategoryValue();
 
+        log.debug("Listing {}: {} of {} products, page {} of {}", query, paginatedProducts.size(), totalProducts, page, totalPages);
 
-        // ✅ Return sorted, paginated results
+        // The sorted page, with totals over the full inventory
         Map<String, Object> response = new HashMap<>();
         response.put("products", paginatedProducts);
         response.put("totalProducts", totalProducts);
         response.put("totalPages", totalPages);
-        response.put("totalStock", Math.max(totalStock, 0)); // ✅ Use FULL inventory totalStock
-        response.put("totalValue", Math.max(totalValue, 0)); // ✅ Use FULL inventory totalValue
-        response.put("categoryStock", categoryStock); // ✅ Add full category stock
-        response.put("categoryValue", categoryValue); // ✅ Add full category value
+        response.put("totalStock", Math.max(totalStock, 0));
+        response.put("totalValue", Math.max(totalValue, 0));
+        response.put("categoryStock", categoryStock);
+        response.put("categoryValue", categoryValue);
         response.put("currentPage", page);
+        response.put("nextCursor", nextCursor);
 
         return response;
     }
 
+    // Primary-key lookup, constant time at any catalog size
+    public Optional<Product> getProductById(Long id) {
+        return productStore.get(id);
+    }
+
     public Product addProduct(Product product) {
-        System.out.println("Received Product: " + product.toString()); // Debugging line
-        product.setId((long) (productList.size() + 1));
+        checkDates(product);
         product.setCreationDate(LocalDate.now());
         product.setUpdateDate(LocalDate.now());
-        productList.add(product);
-
-        System.out.println("✅ Product Created: " + product.getName());
-        System.out.println("🕒 Creation Date: " + product.getCreationDate());
-        System.out.println("🕒 Update Date: " + product.getUpdateDate());
+        ensureWritable();
+        productStore.add(product);
+        awaitDurable();
 
+        log.debug("Product created: {}", product);
         return product;
     }
 
 
 
-    // Add this method inside `ProductService`
     public boolean deleteProductById(Long id) {
-        System.out.println("🗑️ Received delete request for ID: " + id);
+        ensureWritable();
+        if (productStore.remove(id)) {
+            awaitDurable();
+            log.debug("Product {} deleted", id);
+            return true;
+        }
+
+        log.debug("Product {} not found for delete", id);
+        return false; // ❌ Product not found
+    }
+
 
-        Optional<Product> productToDelete = productList.stream()
-                .filter(product -> product.getId().equals(id))
-                .findFirst();
+    public boolean updateProduct(Long id, Product updatedProduct) {
+        return updateProduct(id, updatedProduct, null).isPresent();
+    }
 
-        if (productToDelete.isPresent()) {
-            System.out.println("🗑️ Deleting product: " + productToDelete.get().toString());
+    /**
+     * Compare-and-set update: replaces the product's fields only if it is still at the expected
+     * version, checked and written atomically in the store. No lock is held between the client's
+     * read and this write, and updates of different products never contend.
+     *
+     * @param expectedVersion the version the client read, or null to update any version
+     * @return the stored product after the update, or empty if no product has that id
+     * @throws VersionConflictException if the product is at another version; nothing is written
+     */
+    public Optional<Product> updateProduct(Long id, Product updatedProduct, Long expectedVersion) {
+        checkDates(updatedProduct);
+        LocalDate today = LocalDate.now();
+        ensureWritable();
+        Optional<Product> updated = productStore.update(id, p -> {
+            if (expectedVersion != null && p.getVersion() != expectedVersion) {
+                throw new VersionConflictException(id, expectedVersion, p.getVersion());
+            }
+            return applyUpdate(p, updatedProduct, today);
+        });
+        awaitDurable();
 
-            productList.remove(productToDelete.get()); // Remove from the list
+        updated.ifPresent(p -> log.debug("Product updated: {}", p));
+        return updated;
+    }
 
-            System.out.println("✅ Product with ID " + id + " deleted successfully.");
-            return true; // ✅ Product deleted
+    // Bulk create: ids are reserved in one step and the inventory totals are adjusted once per batch
+    public List<Product> addProducts(List<Product> products) {
+        products.forEach(ProductService::checkDates); // before any product of the batch is stored
+        LocalDate today = LocalDate.now();
+        for (Product product : products) {
+            product.setCreationDate(today);
+            product.setUpdateDate(today);
         }
+        ensureWritable();
+        productStore.addAll(products);
+        awaitDurable();
 
-        System.out.println("❌ Product with ID " + id + " not found.");
-        return false; // ❌ Product not found
+        log.debug("Batch created {} products", products.size());
+        return products;
     }
 
+    /**
+     * Bulk update: each product in the list replaces the fields of the stored product with its id,
+     * like {@link #updateProduct(Long, Product)}.
+     *
+     * @return the ids that matched no product
+     */
+    public List<Long> updateProducts(List<Product> updatedProducts) {
+        updatedProducts.forEach(ProductService::checkDates);
+        LocalDate today = LocalDate.now();
+        Map<Long, UnaryOperator<Product>> updaters = new LinkedHashMap<>();
+        for (Product updatedProduct : updatedProducts) {
+            updaters.put(updatedProduct.getId(), p -> applyUpdate(p, updatedProduct, today));
+        }
+        ensureWritable();
+        List<Long> missing = productStore.updateAll(updaters);
+        awaitDurable();
 
-    public boolean updateProduct(Long id, Product updatedProduct) {
-        for (int i = 0; i < productList.size(); i++) {
-            Product p = productList.get(i);
-            if (p.getId().equals(id)) {
-                p.setName(updatedProduct.getName());
-                p.setCategory(updatedProduct.getCategory());
-                p.setUnitPrice(updatedProduct.getUnitPrice());
-                p.setQuantityInStock(updatedProduct.getQuantityInStock());
-                p.setUpdateDate(LocalDate.now());
-
-                // ✅ Ensure expiration date is updated if provided
-                if (updatedProduct.getExpirationDate() != null) {
-                    p.setExpirationDate(updatedProduct.getExpirationDate());
-                    System.out.println("✅ Expiration Date Updated: " + p.getExpirationDate()); // Debug log
-                } else {
-                    System.out.println("⚠️ No Expiration Date Provided, Keeping Old Value.");
-                }
+        log.debug("Batch updated {} products, {} not found", updaters.size() - missing.size(), missing.size());
+        return missing;
+    }
+
+    /**
+     * Adds a delta to the product's stock, atomically: the new level is computed from the
+     * current one while the product is locked in the store, so concurrent adjustments of the
+     * same product all count and none is lost. Other products are never blocked.
+     *
+     * @return the stored product after the adjustment, or empty if no product has that id
+     * @throws InsufficientStockException if the stock would go below zero; nothing is written
+     */
+    public Optional<Product> adjustStock(Long id, int delta) {
+        LocalDate today = LocalDate.now();
+        ensureWritable();
+        Optional<Product> updated = productStore.update(id, p -> {
+            long stock = (long) p.getQuantityInStock() + delta;
+            if (stock < 0) {
+                throw new InsufficientStockException(id, p.getQuantityInStock(), delta);
+            }
+            if (stock > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Stock of product " + id + " would exceed " + Integer.MAX_VALUE);
+            }
+            return withStock(p, (int) stock, today);
+        });
+        awaitDurable();
+
+        updated.ifPresent(p -> log.debug("Product stock adjusted by {}: {}", delta, p));
+        return updated;
+    }
 
-                productList.set(i, p); // ✅ Save the updated product in memory
-                System.out.println("✅ Product updated: " + p.toString());
-                System.out.println("🕒 New Update Date: " + p.getUpdateDate());
-                return true;
+    /**
+     * Bulk stock adjustment, e.g. a burst of checkouts: one store batch and one durable write.
+     * Each product is adjusted atomically on its own, like {@link #adjustStock}; a product whose
+     * stock would leave the range of an int, e.g. go below zero, is left unchanged without
+     * affecting the others. Adjustments of the same id are added up first.
+     */
+    public StockAdjustmentResult adjustStocks(List<StockAdjustment> adjustments) {
+        Map<Long, Long> deltas = new LinkedHashMap<>();
+        for (StockAdjustment adjustment : adjustments) {
+            deltas.merge(adjustment.getId(), (long) adjustment.getDelta(), Long::sum);
+        }
+        LocalDate today = LocalDate.now();
+        List<Long> rejected = Collections.synchronizedList(new ArrayList<>());
+        Map<Long, UnaryOperator<Product>> updaters = new LinkedHashMap<>();
+        deltas.forEach((id, delta) -> updaters.put(id, p -> {
+            long stock = p.getQuantityInStock() + delta;
+            if (stock < 0 || stock > Integer.MAX_VALUE) {
+                rejected.add(id);
+                return p;
             }
+            return withStock(p, (int) stock, today);
+        }));
+        ensureWritable();
+        List<Long> missing = productStore.updateAll(updaters);
+        awaitDurable();
+
+        int adjusted = updaters.size() - missing.size() - rejected.size();
+        log.debug("Batch adjusted stock of {} products, {} not found, {} rejected", adjusted, missing.size(), rejected.size());
+        return new StockAdjustmentResult(adjusted, missing, List.copyOf(rejected));
+    }
+
+    // The product with a new stock level; the current product itself if the level is unchanged, so nothing is written
+    private static Product withStock(Product product, int stock, LocalDate today) {
+        if (stock == product.getQuantityInStock()) {
+            return product;
         }
-        return false;
+        return product.toBuilder().quantityInStock(stock).updateDate(today).build();
     }
 
-    public boolean markProductOutOfStock(Long id) {
-        for (int i = 0; i < productList.size(); i++) {
-            Product p = productList.get(i);
-            if (p.getId().equals(id)) {
-                p.setQuantityInStock(0);
-                p.setUpdateDate(LocalDate.now());
-
-                productList.set(i, p); // ✅ Ensure productList updates correctly
-                System.out.println("✅ Product marked as out of stock: " + p.toString());
-                return true;
+    // Bulk delete; returns the ids that matched no product
+    public List<Long> deleteProducts(List<Long> ids) {
+        ensureWritable();
+        List<Long> missing = productStore.removeAll(ids);
+        awaitDurable();
+
+        log.debug("Batch deleted {} products, {} not found", ids.size() - missing.size(), missing.size());
+        return missing;
+    }
+
+    /**
+     * Products expiring from one day to another, both included, ordered by expiration date.
+     * Served by the store's expiration index, so only the products in the range are read.
+     *
+     * @throws IllegalArgumentException if the range ends before it starts
+     */
+    public List<Product> getProductsExpiringBetween(LocalDate from, LocalDate to) {
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("Expiration range ends before it starts: " + from + " to " + to);
+        }
+        return productStore.expiringBetween(from, to);
+    }
+
+    // Expiry sweep of the default perishable categories
+    public int sweepExpired(LocalDate today) {
+        return sweepExpired(today, PERISHABLE_CATEGORIES);
+    }
+
+    /**
+     * Expiry sweep: clears the stock of every product of the given categories (case-insensitive)
+     * that expired before the given day and is still in stock, in one batch. Other dated
+     * products, e.g. batteries with a best-before date, keep their stock. Products whose stock
+     * is already cleared are not visited again, so each sweep costs about as much as the
+     * products that expired since the last one.
+     *
+     * @return the number of products taken out of stock
+     */
+    public int sweepExpired(LocalDate today, Collection<String> categories) {
+        Set<String> perishable = productStore.canonicalCategories(categories);
+        Map<Long, UnaryOperator<Product>> updaters = new LinkedHashMap<>();
+        AtomicInteger swept = new AtomicInteger();
+        for (Long id : productStore.expiredInStock(today, categories)) {
+            updaters.put(id, p -> {
+                // Rechecked under the product's lock: it may have been restocked, redated or recategorized meanwhile
+                if (p.getQuantityInStock() <= 0 || p.getExpirationDate() == null || !p.getExpirationDate().isBefore(today)
+                        || !perishable.contains(p.getCategory())) {
+                    return p;
+                }
+                swept.incrementAndGet();
+                return p.toBuilder().quantityInStock(0).updateDate(today).build();
+            });
+        }
+        if (updaters.isEmpty()) {
+            return 0;
+        }
+        ensureWritable();
+        productStore.updateAll(updaters);
+        awaitDurable();
+
+        log.info("Expiry sweep took {} expired products out of stock", swept.get());
+        return swept.get();
+    }
+
+    /**
+     * Routes every subsequent write to the journal; writes then return only once it is durable.
+     * Attached after recovery, so replaying the journal is not journaled again.
+     */
+    public void attachJournal(ChangeJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Recovery: drops the current catalog (e.g. the demo data) before a snapshot is restored,
+     * and defers the costly indexes until {@link #finishRestore()}.
+     */
+    public void beginRestore() {
+        restoring = true; // restored products are not news to followers
+        productStore.deferIndexes();
+        productStore.clear();
+    }
+
+    // Recovery: builds the deferred indexes in the background; listings are served meanwhile
+    public CompletableFuture<Void> finishRestore() {
+        restoring = false;
+        return productStore.buildIndexes();
+    }
+
+    // Recovery: reapplies a journaled change under the ids it carries
+    public void applyChange(ProductChange change) {
+        productStore.apply(change);
+    }
+
+    // Replication: applies a change shipped from the leader like a local write, and publishes it once durable
+    public void replicate(ProductChange change) {
+        if (change.getProduct() != null) {
+            checkDates(change.getProduct());
+        }
+        ensureWritable();
+        productStore.apply(change);
+        awaitDurable();
+    }
+
+    // Changes whenever the catalog does; drives the listing cache and ETags
+    public long catalogVersion() {
+        return productStore.version();
+    }
+
+    // Published catalog changes, for clients that follow the catalog instead of polling it
+    public ChangeFeed changeFeed() {
+        return changeFeed;
+    }
+
+    // Every product, in no particular order; weakly consistent while writes are in flight
+    public Collection<Product> allProducts() {
+        return productStore.all();
+    }
+
+    // Runs under the store's lock on the changed product; only hands the change off
+    private void onChange(ProductChange change) {
+        ChangeJournal current = journal;
+        if (current != null) {
+            current.append(change);
+        }
+        if (!restoring) {
+            changeFeed.stage(change);
+        }
+    }
+
+    /**
+     * Snapshots and the column mirror keep dates as int epoch days, so a product with a date
+     * outside {@link Product#isSupportedDate} could be stored but never snapshotted: every later
+     * compaction would fail. Such writes are refused before anything is applied.
+     */
+    private static void checkDates(Product product) {
+        for (LocalDate date : new LocalDate[]{product.getExpirationDate(), product.getCreationDate(), product.getUpdateDate()}) {
+            if (!Product.isSupportedDate(date)) {
+                throw new IllegalArgumentException("Date " + date + " is outside " + Product.EARLIEST_DATE + " to " + Product.LATEST_DATE);
             }
         }
-        return false;
     }
 
-    public boolean restoreProductStock(Long id) {
-        for (int i = 0; i < productList.size(); i++) {
-            Product p = productList.get(i);
-            if (p.getId().equals(id)) {
-                p.setQuantityInStock(10);
-                p.setUpdateDate(LocalDate.now());
-
-                productList.set(i, p); // ✅ Ensure productList updates correctly
-                System.out.println("✅ Product stock restored: " + p.toString());
-                return true;
+    // Refuses a write before anything is applied once the journal can no longer make it durable
+    private void ensureWritable() {
+        ChangeJournal current = journal;
+        if (current != null) {
+            current.ensureWritable();
+        }
+    }
+
+    /**
+     * Returns once this thread's writes are durable, then publishes them and every change applied
+     * before them. If the journal fails instead, the writes stay applied in memory but are never
+     * published, as no later sync succeeds either.
+     */
+    private void awaitDurable() {
+        long applied = changeFeed.staged();
+        ChangeJournal current = journal;
+        if (current != null) {
+            try {
+                current.sync().join(); // group commit: one fsync covers every write queued so far
+            } catch (CompletionException e) {
+                throw new JournalFailedException("A change could not be made durable", e.getCause());
             }
         }
-        return false;
+        changeFeed.publish(applied);
+    }
+
+    private static Product applyUpdate(Product current, Product updatedProduct, LocalDate today) {
+        Product.ProductBuilder builder = current.toBuilder()
+                .name(updatedProduct.getName())
+                .category(updatedProduct.getCategory())
+                .unitPrice(updatedProduct.getUnitPrice())
+                .quantityInStock(updatedProduct.getQuantityInStock())
+                .updateDate(today);
+
+        // The expiration date is only replaced when one is given
+        if (updatedProduct.getExpirationDate() != null) {
+            builder.expirationDate(updatedProduct.getExpirationDate());
+        }
+        return builder.build();
+    }
+
+    public boolean markProductOutOfStock(Long id) {
+        ensureWritable();
+        Optional<Product> updated = productStore.update(id, p -> p.toBuilder()
+                .quantityInStock(0)
+                .updateDate(LocalDate.now())
+                .build());
+        awaitDurable();
+
+        updated.ifPresent(p -> log.debug("Product marked as out of stock: {}", p));
+        return updated.isPresent();
+    }
+
+    public boolean restoreProductStock(Long id) {
+        ensureWritable();
+        Optional<Product> updated = productStore.update(id, p -> p.toBuilder()
+                .quantityInStock(10)
+                .updateDate(LocalDate.now())
+                .build());
+        awaitDurable();
+
+        updated.ifPresent(p -> log.debug("Product stock restored: {}", p));
+        return updated.isPresent();
     }
 
 
@@ -0,0 +1,13 @@
+package com.encora.esteban.inventory.manager.be.service;
+
+import lombok.Value;
+
+import java.util.List;
+
+// Outcome of a batch of stock adjustments; each product is adjusted or rejected on its own
+@Value
+public class StockAdjustmentResult {
+    int adjusted;
+    List<Long> notFound;
+    List<Long> rejected; // would have gone below zero (or past the largest int); left unchanged
+}
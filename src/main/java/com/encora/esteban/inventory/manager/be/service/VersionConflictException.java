@@ -0,0 +1,20 @@
+package com.encora.esteban.inventory.manager.be.service;
+
+import lombok.Getter;
+
+/**
+ * A conditional write found the product at another version than the one the client read,
+ * i.e. someone else changed it in between. Nothing was written.
+ */
+@Getter
+public class VersionConflictException extends RuntimeException {
+
+    private final long expectedVersion;
+    private final long currentVersion;
+
+    public VersionConflictException(Long id, long expectedVersion, long currentVersion) {
+        super("Product " + id + " is at version " + currentVersion + ", not " + expectedVersion);
+        this.expectedVersion = expectedVersion;
+        this.currentVersion = currentVersion;
+    }
+}
@@ -0,0 +1,80 @@
+package com.encora.esteban.inventory.manager.be.store;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Dense int codes for the few distinct categories of the catalog, so that filter sets, running
+ * totals and columns are arrays indexed by code instead of maps hashed on a string per access.
+ *
+ * Categories are case-insensitive: the first spelling seen becomes the canonical one, and the
+ * store replaces every written category by that canonical instance. Stored products therefore
+ * share one {@code String} per category, and comparing a product's category with a resolved
+ * query category is an identity check.
+ *
+ * The store registers a write's category before it locks the product's bin, so that writes
+ * under the lock only look up spellings already registered, which takes no lock.
+ *
+ * Products without a category share the code of the empty category, as in the totals.
+ * Codes are never reused, so a code read once stays valid.
+ */
+class CategoryDictionary {
+
+    static final int UNKNOWN = -1;
+
+    // Keyed by the lower-cased name; the exact-spelling map spares writes the lower-casing
+    private final ConcurrentHashMap<String, Integer> codes = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Integer> bySpelling = new ConcurrentHashMap<>();
+    private final List<String> names = new CopyOnWriteArrayList<>();
+
+    // The code of a category, registering it if it is new
+    int code(String category) {
+        String spelling = category == null ? "" : category;
+        Integer code = bySpelling.get(spelling);
+        if (code == null) {
+            code = codes.computeIfAbsent(key(spelling), key -> register(spelling));
+            bySpelling.putIfAbsent(spelling, code);
+        }
+        return code;
+    }
+
+    // The code of an existing category, or UNKNOWN; never registers one (for queries)
+    int find(String category) {
+        String spelling = category == null ? "" : category;
+        Integer code = bySpelling.get(spelling);
+        if (code == null) {
+            code = codes.get(key(spelling));
+        }
+        return code == null ? UNKNOWN : code;
+    }
+
+    // Whether this exact spelling has a code, so that code() and canonical() only look it up
+    boolean isRegistered(String category) {
+        return bySpelling.containsKey(category == null ? "" : category);
+    }
+
+    // The canonical spelling of the category, registering it if it is new; null stays null
+    String canonical(String category) {
+        return category == null ? null : names.get(code(category));
+    }
+
+    String name(int code) {
+        return names.get(code);
+    }
+
+    int size() {
+        return names.size();
+    }
+
+    // Runs inside computeIfAbsent for a new key, so each category is appended exactly once
+    private synchronized int register(String spelling) {
+        names.add(spelling);
+        return names.size() - 1;
+    }
+
+    private static String key(String category) {
+        return category.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,73 @@
+package com.encora.esteban.inventory.manager.be.store;
+
+import com.encora.esteban.inventory.manager.be.model.Product;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * The ids of dated products by expiration day, so that a date range is read from the
+ * matching days instead of checking every product. Products without an expiration date are
+ * not indexed.
+ *
+ * A second map holds only the products still in stock: it is exactly what an expiry sweep has
+ * to visit, and products leave it as soon as their stock is cleared, so each sweep only sees
+ * the products that expired since the previous one.
+ *
+ * Days are keyed by epoch day and their id sets are never removed, even when empty, so a
+ * concurrent write never adds to a set that is being dropped; a catalog only spans a few
+ * thousand distinct days.
+ */
+class ExpirationIndex {
+
+    private final ConcurrentSkipListMap<Long, Set<Long>> byDay = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<Long, Set<Long>> inStockByDay = new ConcurrentSkipListMap<>();
+
+    // Called by the store with the product before and after a write; either side may be null
+    void apply(Product before, Product after) {
+        if (before != null && before.getExpirationDate() != null) {
+            long day = before.getExpirationDate().toEpochDay();
+            remove(byDay, day, before.getId());
+            remove(inStockByDay, day, before.getId());
+        }
+        if (after != null && after.getExpirationDate() != null) {
+            long day = after.getExpirationDate().toEpochDay();
+            ids(byDay, day).add(after.getId());
+            if (after.getQuantityInStock() > 0) {
+                ids(inStockByDay, day).add(after.getId());
+            }
+        }
+    }
+
+    // Ids of the products expiring from one day to another, both included, by date and then id
+    List<Long> between(LocalDate from, LocalDate to) {
+        return collect(byDay.subMap(from.toEpochDay(), true, to.toEpochDay(), true));
+    }
+
+    // Ids of the products in stock whose expiration date is before the given day
+    List<Long> inStockBefore(LocalDate day) {
+        return collect(inStockByDay.headMap(day.toEpochDay(), false));
+    }
+
+    private static List<Long> collect(NavigableMap<Long, Set<Long>> days) {
+        List<Long> ids = new ArrayList<>();
+        days.values().forEach(ids::addAll);
+        return ids;
+    }
+
+    private static Set<Long> ids(ConcurrentSkipListMap<Long, Set<Long>> index, long day) {
+        return index.computeIfAbsent(day, d -> new ConcurrentSkipListSet<>());
+    }
+
+    private static void remove(ConcurrentSkipListMap<Long, Set<Long>> index, long day, Long id) {
+        Set<Long> ids = index.get(day);
+        if (ids != null) {
+            ids.remove(id);
+        }
+    }
+}
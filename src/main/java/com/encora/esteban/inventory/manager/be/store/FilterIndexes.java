@@ -0,0 +1,75 @@
+package com.encora.esteban.inventory.manager.be.store;
+
+import com.encora.esteban.inventory.manager.be.model.Product;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Secondary indexes for the category and in-stock filters: the ids of the products in each
+ * category and in each stock state. Filtered listings start from these sets instead of
+ * streaming over every product.
+ */
+class FilterIndexes {
+
+    private final CategoryDictionary categories;
+    // Indexed by category code; category filters are case-insensitive, as the codes are
+    private final List<Set<Long>> byCategory = new CopyOnWriteArrayList<>();
+    private final Set<Long> inStock = ConcurrentHashMap.newKeySet();
+    private final Set<Long> outOfStock = ConcurrentHashMap.newKeySet();
+
+    FilterIndexes(CategoryDictionary categories) {
+        this.categories = categories;
+    }
+
+    // Called by the store with the product before and after a write; either side may be null
+    void apply(Product before, Product after) {
+        if (before != null) {
+            ids(categories.code(before.getCategory())).remove(before.getId());
+            inStock.remove(before.getId());
+            outOfStock.remove(before.getId());
+        }
+        if (after != null) {
+            ids(categories.code(after.getCategory())).add(after.getId());
+            if (after.getQuantityInStock() > 0) {
+                inStock.add(after.getId());
+            } else if (after.getQuantityInStock() == 0) {
+                outOfStock.add(after.getId());
+            }
+        }
+    }
+
+    Set<Long> category(String category) {
+        int code = categories.find(category);
+        return code == CategoryDictionary.UNKNOWN || code >= byCategory.size() ? Collections.emptySet() : byCategory.get(code);
+    }
+
+    Set<Long> stock(boolean inStock) {
+        return inStock ? this.inStock : outOfStock;
+    }
+
+    // The store passes canonical categories, for which equalsIgnoreCase returns on identity
+    static boolean matches(Product product, String category, Boolean inStock) {
+        return (category == null || category.equalsIgnoreCase(product.getCategory()))
+                && (inStock == null || (inStock ? product.getQuantityInStock() > 0 : product.getQuantityInStock() == 0));
+    }
+
+    // Makes room for a newly registered category; the store calls it before locking a product's bin
+    void register(int code) {
+        ids(code);
+    }
+
+    private Set<Long> ids(int code) {
+        if (code >= byCategory.size()) {
+            synchronized (byCategory) {
+                while (byCategory.size() <= code) {
+                    byCategory.add(ConcurrentHashMap.newKeySet());
+                }
+            }
+        }
+        return byCategory.get(code);
+    }
+}
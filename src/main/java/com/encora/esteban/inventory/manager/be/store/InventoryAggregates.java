@@ -0,0 +1,154 @@
+package com.encora.esteban.inventory.manager.be.store;
+
+import com.encora.esteban.inventory.manager.be.model.Product;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Running stock and value totals, adjusted by every write instead of recomputed per request.
+ *
+ * Each change is applied as a delta (remove the old product's contribution, add the new one's)
+ * on striped adders, so concurrent writers never contend on a single counter and reading the
+ * totals costs O(#categories). Per-category totals are indexed by category code.
+ */
+class InventoryAggregates {
+
+    private final CategoryDictionary dictionary;
+    private final List<CategoryTotals> categories = new CopyOnWriteArrayList<>();
+    private final LongAdder totalStock = new LongAdder();
+    private final DoubleAdder totalValue = new DoubleAdder();
+
+    InventoryAggregates(CategoryDictionary dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    // Called by the store with the product before and after a write; either side may be null
+    void apply(Product before, Product after) {
+        if (before != null) {
+            add(before, -1);
+        }
+        if (after != null) {
+            add(after, 1);
+        }
+    }
+
+    // Collects the deltas of a batch of writes so they are published once per category
+    Batch batch() {
+        return new Batch();
+    }
+
+    InventoryTotals snapshot() {
+        Map<String, Integer> categoryStock = new HashMap<>();
+        Map<String, Double> categoryValue = new HashMap<>();
+
+        for (int code = 0; code < categories.size(); code++) {
+            CategoryTotals totals = categories.get(code);
+            if (totals.products.sum() > 0) { // categories whose products were all deleted are not reported
+                categoryStock.put(dictionary.name(code), totals.stock.intValue());
+                categoryValue.put(dictionary.name(code), totals.value.sum());
+            }
+        }
+        return new InventoryTotals(totalStock.intValue(), totalValue.sum(), categoryStock, categoryValue);
+    }
+
+    private void add(Product product, int sign) {
+        int stock = product.getQuantityInStock();
+        double value = product.getUnitPrice() * stock;
+
+        CategoryTotals totals = totals(dictionary.code(product.getCategory()));
+        totals.products.add(sign);
+        totals.stock.add((long) sign * stock);
+        totals.value.add(sign * value);
+
+        totalStock.add((long) sign * stock);
+        totalValue.add(sign * value);
+    }
+
+    // Makes room for a newly registered category; the store calls it before locking a product's bin
+    void register(int code) {
+        totals(code);
+    }
+
+    private CategoryTotals totals(int code) {
+        if (code >= categories.size()) {
+            synchronized (categories) {
+                while (categories.size() <= code) {
+                    categories.add(new CategoryTotals());
+                }
+            }
+        }
+        return categories.get(code);
+    }
+
+    /**
+     * Deltas of many writes accumulated on plain fields by the batch's own thread, then added
+     * to the shared adders in a single pass per category by {@link #commit()}.
+     */
+    final class Batch {
+
+        // Indexed by category code
+        private Delta[] deltas = new Delta[8];
+
+        void apply(Product before, Product after) {
+            if (before != null) {
+                add(before, -1);
+            }
+            if (after != null) {
+                add(after, 1);
+            }
+        }
+
+        void commit() {
+            long stock = 0;
+            double value = 0.0;
+            for (int code = 0; code < deltas.length; code++) {
+                Delta delta = deltas[code];
+                if (delta == null) {
+                    continue;
+                }
+                CategoryTotals totals = totals(code);
+                totals.products.add(delta.products);
+                totals.stock.add(delta.stock);
+                totals.value.add(delta.value);
+                stock += delta.stock;
+                value += delta.value;
+            }
+            totalStock.add(stock);
+            totalValue.add(value);
+            Arrays.fill(deltas, null);
+        }
+
+        private void add(Product product, int sign) {
+            int stock = product.getQuantityInStock();
+            int code = dictionary.code(product.getCategory());
+            if (code >= deltas.length) {
+                deltas = Arrays.copyOf(deltas, Math.max(code + 1, deltas.length * 2));
+            }
+            Delta delta = deltas[code];
+            if (delta == null) {
+                delta = deltas[code] = new Delta();
+            }
+            delta.products += sign;
+            delta.stock += (long) sign * stock;
+            delta.value += sign * product.getUnitPrice() * stock;
+        }
+    }
+
+    private static final class Delta {
+        long products;
+        long stock;
+        double value;
+    }
+
+    private static final class CategoryTotals {
+        final LongAdder products = new LongAdder();
+        final LongAdder stock = new LongAdder();
+        final DoubleAdder value = new DoubleAdder();
+    }
+}
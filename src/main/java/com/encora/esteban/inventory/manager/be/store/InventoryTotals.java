@@ -0,0 +1,65 @@
+package com.encora.esteban.inventory.manager.be.store;
+
+import com.encora.esteban.inventory.manager.be.model.Product;
+import lombok.Value;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Point-in-time stock and value totals for the whole catalog and per category.
+ */
+@Value
+public class InventoryTotals {
+
+    int totalStock;
+    double totalValue;
+    Map<String, Integer> categoryStock;
+    Map<String, Double> categoryValue;
+
+    // Full recompute over every product; the reference the running aggregates are checked against
+    public static InventoryTotals recompute(Collection<Product> products) {
+        Map<String, Integer> categoryStock = new HashMap<>();
+        Map<String, Double> categoryValue = new HashMap<>();
+        int totalStock = 0;
+        double totalValue = 0.0;
+
+        for (Product product : products) {
+            int stock = product.getQuantityInStock();
+            double value = product.getUnitPrice() * stock;
+
+            categoryStock.merge(categoryKey(product), stock, Integer::sum);
+            categoryValue.merge(categoryKey(product), value, Double::sum);
+
+            totalStock += stock;
+            totalValue += value;
+        }
+        return new InventoryTotals(totalStock, totalValue, categoryStock, categoryValue);
+    }
+
+    // Products without a category are grouped under the empty name
+    static String categoryKey(Product product) {
+        return product.getCategory() == null ? "" : product.getCategory();
+    }
+
+    /**
+     * Compares two sets of totals. Stock must match exactly; values are sums of doubles
+     * built up in different orders, so they only need to agree within {@code tolerance}
+     * relative to their magnitude.
+     */
+    public boolean matches(InventoryTotals other, double tolerance) {
+        if (totalStock != other.totalStock
+                || !close(totalValue, other.totalValue, tolerance)
+                || !categoryStock.equals(other.categoryStock)
+                || !categoryValue.keySet().equals(other.categoryValue.keySet())) {
+            return false;
+        }
+        return categoryValue.entrySet().stream()
+                .allMatch(e -> close(e.getValue(), other.categoryValue.get(e.getKey()), tolerance));
+    }
+
+    private static boolean close(double a, double b, double tolerance) {
+        return Math.abs(a - b) <= tolerance * Math.max(1.0, Math.max(Math.abs(a), Math.abs(b)));
+    }
+}
@@ -0,0 +1,94 @@
+package com.encora.esteban.inventory.manager.be.store;
+
+import com.encora.esteban.inventory.manager.be.model.Product;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Trigram index over lower-cased product names, for the case-insensitive substring filter.
+ *
+ * Every name that contains a query also contains each of the query's trigrams, so intersecting
+ * the posting sets of those trigrams yields a superset of the matches without scanning the
+ * catalog. Candidates still have to be checked against the real name, since the trigrams of a
+ * candidate can appear in a different order or position than in the query.
+ */
+class NameIndex {
+
+    static final int GRAM = 3;
+
+    private final ConcurrentHashMap<String, Set<Long>> postings = new ConcurrentHashMap<>();
+
+    // Called by the store with the product before and after a write; either side may be null
+    void apply(Product before, Product after) {
+        String oldName = before == null ? null : before.getName();
+        String newName = after == null ? null : after.getName();
+        if (before != null && after != null && Objects.equals(oldName, newName)) {
+            return; // most updates leave the name alone
+        }
+        if (oldName != null) {
+            for (String gram : grams(oldName)) {
+                Set<Long> ids = postings.get(gram);
+                if (ids != null) {
+                    ids.remove(before.getId());
+                }
+            }
+        }
+        if (newName != null) {
+            for (String gram : grams(newName)) {
+                postings.computeIfAbsent(gram, g -> ConcurrentHashMap.newKeySet()).add(after.getId());
+            }
+        }
+    }
+
+    void clear() {
+        postings.clear();
+    }
+
+    /**
+     * Ids of the products whose name may contain {@code query}, or null when the query is
+     * shorter than a trigram and the index cannot narrow the search.
+     */
+    Set<Long> candidates(String query) {
+        if (query.length() < GRAM) {
+            return null;
+        }
+        List<Set<Long>> sets = new ArrayList<>();
+        for (String gram : grams(query)) {
+            Set<Long> ids = postings.get(gram);
+            if (ids == null || ids.isEmpty()) {
+                return Collections.emptySet(); // some trigram occurs in no name at all
+            }
+            sets.add(ids);
+        }
+        sets.sort(Comparator.comparingInt(Set::size));
+
+        Set<Long> result = new HashSet<>();
+        for (Long id : sets.get(0)) {
+            boolean inAll = true;
+            for (int i = 1; i < sets.size() && inAll; i++) {
+                inAll = sets.get(i).contains(id);
+            }
+            if (inAll) {
+                result.add(id);
+            }
+        }
+        return result;
+    }
+
+    // Lower-cased the same way as the name filter, so candidates are never missed
+    private static Set<String> grams(String text) {
+        String lower = ProductQuery.foldName(text);
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM <= lower.length(); i++) {
+            grams.add(lower.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+}
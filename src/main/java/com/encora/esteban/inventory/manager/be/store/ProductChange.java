@@ -0,0 +1,51 @@
+package com.encora.esteban.inventory.manager.be.store;
+
+import com.encora.esteban.inventory.manager.be.model.Product;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Value;
+import lombok.With;
+
+/**
+ * One write to the catalog: the product's state after a create or update, or the id of a
+ * deleted product. Changes carry full after-images, so replaying one is idempotent.
+ * {@code STOCK} is an update that changed nothing but the stock level (and update date).
+ *
+ * The sequence number is 0 when the store emits the change and is assigned by whatever
+ * orders the changes into a log.
+ */
+@Value
+@AllArgsConstructor
+@NoArgsConstructor(force = true)
+public class ProductChange {
+
+    public enum Type {
+        CREATE, UPDATE, STOCK, DELETE
+    }
+
+    @With
+    long sequence;
+    Type type;
+    Long id;
+    Product product;
+
+    static ProductChange of(Product before, Product after) {
+        if (before == null) {
+            return new ProductChange(0, Type.CREATE, after.getId(), after);
+        }
+        if (after == null) {
+            return new ProductChange(0, Type.DELETE, before.getId(), null);
+        }
+        return new ProductChange(0, stockOnly(before, after) ? Type.STOCK : Type.UPDATE, after.getId(), after);
+    }
+
+    private static boolean stockOnly(Product before, Product after) {
+        return before.getQuantityInStock() != after.getQuantityInStock()
+                && before.toBuilder()
+                        .quantityInStock(after.getQuantityInStock())
+                        .updateDate(after.getUpdateDate())
+                        .version(after.getVersion())
+                        .build()
+                        .equals(after);
+    }
+}
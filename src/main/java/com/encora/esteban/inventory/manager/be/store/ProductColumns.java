@@ -0,0 +1,248 @@
+package com.encora.esteban.inventory.manager.be.store;
+
+import com.encora.esteban.inventory.manager.be.model.Product;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Optional mirror of the catalog in primitive columns, for the listings that have to scan most
+ * of the catalog: a filter loop over {@code double[]} prices and {@code int[]} stock codes
+ * touches a few contiguous arrays instead of chasing a pointer to every {@code Product} and its
+ * boxed and date fields. A scan yields only the ids of the page, so {@code Product}s are
+ * fetched for the returned rows alone.
+ *
+ * Each product occupies one slot in every column; slots of deleted products are reused.
+ * Categories are stored as {@link CategoryDictionary} codes and dates as epoch days. Rows are
+ * refreshed under the write lock and scans hold the read lock, so a scan never sees half of a row.
+ */
+class ProductColumns {
+
+    private static final long EMPTY = Long.MIN_VALUE;
+    private static final int NO_CATEGORY = -1;
+    // Sorts after every real date, like the nullsLast comparator of the object path
+    private static final int NO_DATE = Integer.MAX_VALUE;
+    private static final Comparator<String> NULLS_LAST = Comparator.nullsLast(Comparator.naturalOrder());
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Integer> slots = new HashMap<>();
+    private final CategoryDictionary dictionary;
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+    private int used; // slots below this have been handed out at least once
+
+    private long[] ids = new long[1024];
+    private String[] names = new String[1024];
+    private String[] foldedNames = new String[1024]; // ProductQuery.foldName of each name, for the name filter
+    private int[] categoryColumn = new int[1024];
+    private double[] prices = new double[1024];
+    private int[] stocks = new int[1024];
+    private int[] expirations = new int[1024];
+
+    ProductColumns(CategoryDictionary dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * Result of a scan: the ids of the requested page in listing order, and the number of
+     * products matching the query.
+     */
+    record Page(long[] ids, int matches) {
+    }
+
+    /**
+     * Brings the row of one product in line with the catalog, reading the product under the
+     * write lock. Called after the write, outside the map's bin lock, so a writer waiting for a
+     * running scan holds no monitor (a virtual thread would stay pinned to its carrier).
+     * Refreshes of the same product may run in any order: each reads the latest state, so the
+     * last one to run leaves the row current.
+     */
+    void refresh(Long id, Function<Long, Product> catalog) {
+        lock.writeLock().lock();
+        try {
+            Product product = catalog.apply(id);
+            if (product == null) {
+                Integer slot = slots.remove(id);
+                if (slot != null) {
+                    ids[slot] = EMPTY;
+                    names[slot] = null;
+                    foldedNames[slot] = null;
+                    release(slot);
+                }
+                return;
+            }
+            int slot = slots.computeIfAbsent(id, key -> allocate());
+            ids[slot] = id;
+            names[slot] = product.getName();
+            foldedNames[slot] = product.getName() == null ? null : ProductQuery.foldName(product.getName());
+            categoryColumn[slot] = product.getCategory() == null ? NO_CATEGORY : dictionary.code(product.getCategory());
+            prices[slot] = product.getUnitPrice();
+            stocks[slot] = product.getQuantityInStock();
+            expirations[slot] = product.getExpirationDate() == null ? NO_DATE
+                    : Math.toIntExact(product.getExpirationDate().toEpochDay());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Scans every row for products matching the query's filters and keeps the first
+     * {@code offset + limit} of them in a bounded heap of slots, ordered like
+     * {@link ProductQuery#order()}. Cursors are not supported here.
+     */
+    Page scan(ProductQuery query, int offset, int limit) {
+        int capacity = (int) Math.min((long) offset + limit, Integer.MAX_VALUE);
+        lock.readLock().lock();
+        try {
+            int category = query.getCategory() == null ? NO_CATEGORY : dictionary.find(query.getCategory());
+            if (query.getCategory() != null && category == CategoryDictionary.UNKNOWN) {
+                return new Page(new long[0], 0);
+            }
+            String name = query.getName() == null ? null : ProductQuery.foldName(query.getName());
+            Boolean inStock = query.getInStock();
+            SlotOrder order = order(query.getSort(), query.isDescending());
+
+            // Max-heap on the order: the root is the last slot kept and is evicted first
+            int[] heap = new int[Math.max(1, Math.min(capacity, 1024))];
+            int heapSize = 0;
+            int matches = 0;
+            for (int slot = 0; slot < used; slot++) {
+                if (ids[slot] == EMPTY
+                        || (inStock != null && (inStock ? stocks[slot] <= 0 : stocks[slot] != 0))
+                        || (query.getCategory() != null && categoryColumn[slot] != category)
+                        || (name != null && (foldedNames[slot] == null || !foldedNames[slot].contains(name)))) {
+                    continue;
+                }
+                matches++;
+                if (heapSize < capacity) {
+                    if (heapSize == heap.length) {
+                        heap = Arrays.copyOf(heap, (int) Math.min((long) heap.length * 2, capacity));
+                    }
+                    heap[heapSize] = slot;
+                    siftUp(heap, heapSize++, order);
+                } else if (capacity > 0 && order.compare(slot, heap[0]) < 0) {
+                    heap[0] = slot;
+                    siftDown(heap, heapSize, order);
+                }
+            }
+
+            // Emptying the max-heap yields the kept slots from last to first
+            long[] page = new long[Math.max(0, heapSize - offset)];
+            for (int remaining = heapSize; remaining > 0; remaining--) {
+                int slot = heap[0];
+                heap[0] = heap[remaining - 1];
+                siftDown(heap, remaining - 1, order);
+                if (remaining - 1 >= offset) {
+                    page[remaining - 1 - offset] = ids[slot];
+                }
+            }
+            return new Page(page, matches);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @FunctionalInterface
+    private interface SlotOrder {
+        int compare(int a, int b);
+    }
+
+    // The column comparison equivalent to ProductSort's comparator, ending with the id
+    private SlotOrder order(ProductSort sort, boolean descending) {
+        SlotOrder byKey = switch (sort) {
+            case NAME -> (a, b) -> NULLS_LAST.compare(names[a], names[b]);
+            case CATEGORY -> {
+                int[] rank = categoryRanks();
+                yield (a, b) -> Integer.compare(rank(rank, categoryColumn[a]), rank(rank, categoryColumn[b]));
+            }
+            case PRICE -> (a, b) -> Double.compare(prices[a], prices[b]);
+            case STOCK -> (a, b) -> Integer.compare(stocks[a], stocks[b]);
+            case EXPIRATION -> (a, b) -> Integer.compare(expirations[a], expirations[b]);
+        };
+        SlotOrder ascending = (a, b) -> {
+            int byValue = byKey.compare(a, b);
+            return byValue != 0 ? byValue : Long.compare(ids[a], ids[b]);
+        };
+        return descending ? (a, b) -> ascending.compare(b, a) : ascending;
+    }
+
+    // Position of every category code in the natural order of the canonical names
+    private int[] categoryRanks() {
+        Integer[] codes = new Integer[dictionary.size()];
+        for (int i = 0; i < codes.length; i++) {
+            codes[i] = i;
+        }
+        Arrays.sort(codes, Comparator.comparing(dictionary::name));
+        int[] rank = new int[codes.length];
+        for (int i = 0; i < codes.length; i++) {
+            rank[codes[i]] = i;
+        }
+        return rank;
+    }
+
+    private static int rank(int[] rank, int code) {
+        return code == NO_CATEGORY ? Integer.MAX_VALUE : rank[code];
+    }
+
+    private static void siftUp(int[] heap, int index, SlotOrder order) {
+        int slot = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (order.compare(slot, heap[parent]) <= 0) {
+                break;
+            }
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = slot;
+    }
+
+    private static void siftDown(int[] heap, int size, SlotOrder order) {
+        if (size == 0) {
+            return;
+        }
+        int slot = heap[0];
+        int index = 0;
+        while (2 * index + 1 < size) {
+            int child = 2 * index + 1;
+            if (child + 1 < size && order.compare(heap[child + 1], heap[child]) > 0) {
+                child++;
+            }
+            if (order.compare(slot, heap[child]) >= 0) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = slot;
+    }
+
+    private int allocate() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+        if (used == ids.length) {
+            int capacity = ids.length * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            names = Arrays.copyOf(names, capacity);
+            foldedNames = Arrays.copyOf(foldedNames, capacity);
+            categoryColumn = Arrays.copyOf(categoryColumn, capacity);
+            prices = Arrays.copyOf(prices, capacity);
+            stocks = Arrays.copyOf(stocks, capacity);
+            expirations = Arrays.copyOf(expirations, capacity);
+        }
+        return used++;
+    }
+
+    private void release(int slot) {
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = slot;
+    }
+}
@@ -0,0 +1,77 @@
+package com.encora.esteban.inventory.manager.be.store;
+
+import com.encora.esteban.inventory.manager.be.model.Product;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Base64;
+
+/**
+ * Opaque keyset-pagination cursor: the sort key and id of the last product a client has seen,
+ * together with the ordering it was seen in. Resuming from a cursor seeks straight to that
+ * position in the sorted index, so deep pages cost the same as the first one and do not shift
+ * when products before them are added or deleted.
+ */
+public final class ProductCursor {
+
+    private static final String SEPARATOR = "|";
+
+    private ProductCursor() {
+    }
+
+    public static String encode(ProductQuery query, Product last) {
+        String key = key(query.getSort(), last);
+        String raw = String.join(SEPARATOR,
+                query.getSort().getParam(),
+                query.isDescending() ? "desc" : "asc",
+                String.valueOf(last.getId()),
+                key == null ? "-" : "+" + key);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes a cursor into a probe product carrying only the id and the sort key, to be used
+     * as {@link ProductQuery#getAfter()}.
+     *
+     * @throws IllegalArgumentException if the cursor is malformed or was issued for another ordering
+     */
+    public static Product decode(String cursor, ProductQuery query) {
+        String[] parts;
+        try {
+            parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|", 4);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed cursor", e);
+        }
+        if (parts.length != 4 || parts[3].isEmpty()) {
+            throw new IllegalArgumentException("Malformed cursor");
+        }
+        if (!parts[0].equals(query.getSort().getParam()) || !parts[1].equals(query.isDescending() ? "desc" : "asc")) {
+            throw new IllegalArgumentException("Cursor was issued for a different sortBy or sortOrder");
+        }
+
+        try {
+            Product.ProductBuilder probe = Product.builder().id(Long.parseLong(parts[2]));
+            String key = parts[3].charAt(0) == '+' ? parts[3].substring(1) : null;
+            switch (query.getSort()) {
+                case NAME -> probe.name(key);
+                case CATEGORY -> probe.category(key);
+                case PRICE -> probe.unitPrice(Double.parseDouble(key));
+                case STOCK -> probe.quantityInStock(Integer.parseInt(key));
+                case EXPIRATION -> probe.expirationDate(key == null ? null : LocalDate.parse(key));
+            }
+            return probe.build();
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Malformed cursor", e);
+        }
+    }
+
+    private static String key(ProductSort sort, Product product) {
+        return switch (sort) {
+            case NAME -> product.getName();
+            case CATEGORY -> product.getCategory();
+            case PRICE -> Double.toString(product.getUnitPrice());
+            case STOCK -> Integer.toString(product.getQuantityInStock());
+            case EXPIRATION -> product.getExpirationDate() == null ? null : product.getExpirationDate().toString();
+        };
+    }
+}
@@ -0,0 +1,15 @@
+package com.encora.esteban.inventory.manager.be.store;
+
+import com.encora.esteban.inventory.manager.be.model.Product;
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * One page of a listing together with the number of products matching the query.
+ */
+@Value
+public class ProductPage {
+    List<Product> products;
+    int totalProducts;
+}
@@ -0,0 +1,53 @@
+package com.encora.esteban.inventory.manager.be.store;
+
+import com.encora.esteban.inventory.manager.be.model.Product;
+import lombok.Builder;
+import lombok.Value;
+import lombok.With;
+
+import java.util.Comparator;
+import java.util.Locale;
+
+/**
+ * Filters and ordering of a product listing; null filters match every product.
+ */
+@Value
+@Builder
+public class ProductQuery {
+    String name;
+    @With
+    String category;
+    Boolean inStock;
+    @Builder.Default
+    ProductSort sort = ProductSort.NAME;
+    boolean descending;
+    // Keyset position: only products ordered after this one are listed (see ProductCursor)
+    @With
+    Product after;
+
+    boolean isFiltered() {
+        return name != null || category != null || inStock != null;
+    }
+
+    boolean matches(Product product) {
+        return (name == null || foldName(product.getName()).contains(foldName(name)))
+                && FilterIndexes.matches(product, category, inStock);
+    }
+
+    /**
+     * The case-insensitive form of a name or name filter. Every path that matches names, i.e.
+     * this query, the trigram index and the columns, compares these forms, so they agree on
+     * any input, including letters whose lower case is longer than they are, such as 'İ'.
+     */
+    static String foldName(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    boolean isAfterCursor(Product product) {
+        return after == null || order().compare(product, after) > 0;
+    }
+
+    Comparator<Product> order() {
+        return descending ? sort.comparator().reversed() : sort.comparator();
+    }
+}
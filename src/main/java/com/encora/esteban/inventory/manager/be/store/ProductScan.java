@@ -0,0 +1,104 @@
+package com.encora.esteban.inventory.manager.be.store;
+
+import com.encora.esteban.inventory.manager.be.model.Product;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Filters products that no index narrows and keeps the first matches of the query's order.
+ *
+ * Below the parallel threshold the products are scanned on the calling thread. Above it the
+ * scan is split into partitions that run on the fork-join pool: each keeps a {@link TopK} of
+ * its own and counts its matches, and the partials are merged as the partitions join. The
+ * pool is the caller's if it is a fork-join worker, and the common pool otherwise.
+ */
+final class ProductScan extends RecursiveTask<ProductScan.Partial> {
+
+    // Smallest partition worth a task of its own
+    private static final long MIN_PARTITION = 2048;
+    // Partitions per worker, so a worker that finishes early can steal from the others
+    private static final int PARTITIONS_PER_WORKER = 4;
+
+    private final Spliterator<Product> products;
+    private final ProductQuery query;
+    private final int capacity;
+    private final long partitionSize;
+
+    private ProductScan(Spliterator<Product> products, ProductQuery query, int capacity, long partitionSize) {
+        this.products = products;
+        this.query = query;
+        this.capacity = capacity;
+        this.partitionSize = partitionSize;
+    }
+
+    // The matches counted so far and the first ones in order
+    static final class Partial {
+
+        final TopK topK;
+        int matches;
+
+        Partial(ProductQuery query, int capacity) {
+            this.topK = new TopK(query.order(), capacity);
+        }
+
+        void offer(ProductQuery query, Product product) {
+            // Recheck every filter: candidates come from one index only and may have changed since
+            if (query.matches(product)) {
+                matches++;
+                if (query.isAfterCursor(product)) {
+                    topK.offer(product);
+                }
+            }
+        }
+
+        Partial merge(Partial other) {
+            topK.addAll(other.topK);
+            matches += other.matches;
+            return this;
+        }
+    }
+
+    /**
+     * @param size              the number of products, or an estimate of it
+     * @param capacity          how many of the first matches to keep
+     * @param parallelThreshold the size from which the scan is split across the pool
+     */
+    static Partial scan(Collection<Product> products, int size, ProductQuery query, int capacity, int parallelThreshold) {
+        if (size < parallelThreshold) {
+            Partial partial = new Partial(query, capacity);
+            for (Product product : products) {
+                partial.offer(query, product);
+            }
+            return partial;
+        }
+        ForkJoinPool pool = ForkJoinTask.inForkJoinPool() ? ForkJoinTask.getPool() : ForkJoinPool.commonPool();
+        long partitionSize = Math.max(MIN_PARTITION, size / ((long) pool.getParallelism() * PARTITIONS_PER_WORKER));
+        ProductScan task = new ProductScan(products.spliterator(), query, capacity, partitionSize);
+        return ForkJoinTask.inForkJoinPool() ? task.invoke() : pool.invoke(task);
+    }
+
+    // Splits off partitions for other workers until the rest is small enough to scan here
+    @Override
+    protected Partial compute() {
+        List<ProductScan> forked = new ArrayList<>();
+        Spliterator<Product> rest = products;
+        Spliterator<Product> split;
+        while (rest.estimateSize() > partitionSize && (split = rest.trySplit()) != null) {
+            ProductScan partition = new ProductScan(split, query, capacity, partitionSize);
+            partition.fork();
+            forked.add(partition);
+        }
+        Partial partial = new Partial(query, capacity);
+        rest.forEachRemaining(product -> partial.offer(query, product));
+        for (int i = forked.size() - 1; i >= 0; i--) {
+            partial.merge(forked.get(i).join()); // newest first: the most likely to still be unstolen
+        }
+        return partial;
+    }
+}
@@ -0,0 +1,44 @@
+package com.encora.esteban.inventory.manager.be.store;
+
+import com.encora.esteban.inventory.manager.be.model.Product;
+
+import java.util.Comparator;
+
+/**
+ * The keys a product listing can be sorted by. Every ordering ends with the id, so it is
+ * total: no two products compare as equal, pages never overlap and sorted indexes can hold
+ * every product.
+ */
+public enum ProductSort {
+    NAME("name", Comparator.comparing(Product::getName, Comparator.nullsLast(Comparator.naturalOrder()))),
+    CATEGORY("category", Comparator.comparing(Product::getCategory, Comparator.nullsLast(Comparator.naturalOrder()))),
+    PRICE("price", Comparator.comparingDouble(Product::getUnitPrice)),
+    STOCK("stock", Comparator.comparingInt(Product::getQuantityInStock)),
+    EXPIRATION("expiration", Comparator.comparing(Product::getExpirationDate, Comparator.nullsLast(Comparator.naturalOrder())));
+
+    private final String param;
+    private final Comparator<Product> comparator;
+
+    ProductSort(String param, Comparator<Product> keyComparator) {
+        this.param = param;
+        this.comparator = keyComparator.thenComparing(Product::getId);
+    }
+
+    public String getParam() {
+        return param;
+    }
+
+    public Comparator<Product> comparator() {
+        return comparator;
+    }
+
+    // Unknown sortBy values fall back to sorting by name, as the listing always has
+    public static ProductSort fromParam(String sortBy) {
+        for (ProductSort sort : values()) {
+            if (sort.param.equals(sortBy)) {
+                return sort;
+            }
+        }
+        return NAME;
+    }
+}
@@ -0,0 +1,662 @@
+package com.encora.esteban.inventory.manager.be.store;
+
+import com.encora.esteban.inventory.manager.be.model.Product;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+/**
+ * Thread-safe in-memory product catalog keyed by id.
+ *
+ * Writes lock only the hash bin of the product being changed, and reads never lock,
+ * so handlers working on different products do not contend. Products held by the store
+ * are treated as immutable: updates swap in a new instance instead of mutating the old one,
+ * which lets readers iterate without ever seeing a half-applied change.
+ *
+ * Every write goes through {@link #onChange(Product, Product)} while the product's bin is
+ * still locked, which is where derived structures such as the running totals and the filter,
+ * sorted and name indexes are kept in step. Nothing there waits for a lock, since the bin's
+ * monitor is held: a virtual thread waiting under it would pin its carrier. New categories
+ * are therefore registered before the bin is locked.
+ *
+ * The sorted and name indexes are the costly part of a write. Bulk loads such as recovery can
+ * defer them ({@link #deferIndexes()}) and have them built in the background afterwards
+ * ({@link #buildIndexes()}); until then, listings are answered by scanning the catalog.
+ */
+public class ProductStore {
+
+    // Running totals are sums of doubles, so they may drift from a fresh recompute by rounding error
+    private static final double VALUE_TOLERANCE = 1e-6;
+    // Index candidate sets larger than this share of the catalog are scanned in columns instead
+    private static final int COLUMN_SCAN_DIVISOR = 4;
+    public static final int DEFAULT_PARALLEL_SCAN_THRESHOLD = 50_000;
+
+    private final ConcurrentHashMap<Long, Product> products = new ConcurrentHashMap<>();
+    private final AtomicLong idSequence = new AtomicLong();
+    private final AtomicLong version = new AtomicLong();
+    private final CategoryDictionary categories = new CategoryDictionary();
+    private final InventoryAggregates aggregates = new InventoryAggregates(categories);
+    private final FilterIndexes filterIndexes = new FilterIndexes(categories);
+    private final SortedIndexes sortedIndexes = new SortedIndexes();
+    private final ExpirationIndex expirationIndex = new ExpirationIndex();
+    private final NameIndex nameIndex = new NameIndex();
+    private final ProductColumns columns;
+    private final int parallelScanThreshold;
+    private volatile Consumer<ProductChange> changeListener;
+    private volatile IndexState indexState = IndexState.READY;
+
+    private enum IndexState {
+        DEFERRED, // not maintained by writes, nor used by reads
+        BUILDING, // maintained by writes while the builder catches up, not yet used by reads
+        READY
+    }
+
+    public ProductStore() {
+        this(false);
+    }
+
+    public ProductStore(boolean columnarScans) {
+        this(columnarScans, DEFAULT_PARALLEL_SCAN_THRESHOLD);
+    }
+
+    /**
+     * @param columnarScans         also keep the catalog in primitive columns ({@link ProductColumns}),
+     *                              for filtered listings that would otherwise visit most products
+     * @param parallelScanThreshold listings that no index narrows are scanned in parallel
+     *                              ({@link ProductScan}) from this many candidates on
+     */
+    public ProductStore(boolean columnarScans, int parallelScanThreshold) {
+        this.columns = columnarScans ? new ProductColumns(categories) : null;
+        this.parallelScanThreshold = parallelScanThreshold;
+    }
+
+    // Stores a new product under a freshly generated id, as version 1
+    public Product add(Product product) {
+        product.setId(idSequence.incrementAndGet());
+        product.setVersion(1);
+        return put(product);
+    }
+
+    /**
+     * Stores a product under the id and version it already carries (seed data, restored state);
+     * later generated ids never collide with it. Products without a version become version 1.
+     */
+    public Product load(Product product) {
+        idSequence.accumulateAndGet(product.getId(), Math::max);
+        if (product.getVersion() == 0) {
+            product.setVersion(1);
+        }
+        return put(product);
+    }
+
+    /**
+     * Stores many new products under consecutive fresh ids. The id range is reserved in one
+     * step and the running totals are published once per category for the whole batch.
+     */
+    public List<Product> addAll(List<Product> batch) {
+        long firstId = idSequence.getAndAdd(batch.size()) + 1;
+        InventoryAggregates.Batch totals = aggregates.batch();
+        for (int i = 0; i < batch.size(); i++) {
+            Product product = batch.get(i);
+            product.setId(firstId + i);
+            product.setVersion(1);
+            registerCategory(product);
+            products.compute(product.getId(), (key, current) -> {
+                onChange(current, product, totals);
+                return product;
+            });
+            refreshColumns(product.getId());
+        }
+        totals.commit();
+        version.incrementAndGet();
+        return batch;
+    }
+
+    /**
+     * Applies one updater per id, each atomically as in {@link #update(Long, UnaryOperator)},
+     * publishing the running totals once for the whole batch.
+     *
+     * @return the ids that matched no product
+     */
+    public List<Long> updateAll(Map<Long, UnaryOperator<Product>> updaters) {
+        InventoryAggregates.Batch totals = aggregates.batch();
+        List<Long> missing = new ArrayList<>();
+        AtomicBoolean anyChanged = new AtomicBoolean();
+        updaters.forEach((id, updater) -> {
+            AtomicBoolean changed = new AtomicBoolean();
+            AtomicReference<Product> unregistered = new AtomicReference<>();
+            Product updated;
+            do {
+                updated = products.computeIfPresent(id, (key, current) -> {
+                    Product next = updater.apply(current);
+                    if (next == current) {
+                        return current;
+                    }
+                    if (!categories.isRegistered(next.getCategory())) {
+                        unregistered.set(next);
+                        return current;
+                    }
+                    next.setVersion(current.getVersion() + 1);
+                    onChange(current, next, totals);
+                    changed.set(true);
+                    return next;
+                });
+            } while (registerCategory(unregistered.getAndSet(null)));
+            if (updated == null) {
+                missing.add(id);
+            } else if (changed.get()) {
+                refreshColumns(id);
+                anyChanged.set(true);
+            }
+        });
+        totals.commit();
+        if (anyChanged.get()) {
+            version.incrementAndGet();
+        }
+        return missing;
+    }
+
+    /**
+     * Removes every listed product, publishing the running totals once for the whole batch.
+     *
+     * @return the ids that matched no product
+     */
+    public List<Long> removeAll(Collection<Long> ids) {
+        InventoryAggregates.Batch totals = aggregates.batch();
+        List<Long> missing = new ArrayList<>();
+        for (Long id : ids) {
+            AtomicBoolean removed = new AtomicBoolean();
+            if (id != null) {
+                products.computeIfPresent(id, (key, current) -> {
+                    onChange(current, null, totals);
+                    removed.set(true);
+                    return null;
+                });
+            }
+            if (removed.get()) {
+                refreshColumns(id);
+            } else {
+                missing.add(id);
+            }
+        }
+        totals.commit();
+        if (missing.size() < ids.size()) {
+            version.incrementAndGet();
+        }
+        return missing;
+    }
+
+    /**
+     * Applies a change recorded elsewhere (a log being replayed), keeping the ids it carries.
+     */
+    public void apply(ProductChange change) {
+        if (change.getType() == ProductChange.Type.DELETE) {
+            idSequence.accumulateAndGet(change.getId(), Math::max); // the id stays taken
+            remove(change.getId());
+        } else {
+            load(change.getProduct());
+        }
+    }
+
+    // Removes every product, e.g. before a snapshot is restored
+    public void clear() {
+        for (Long id : products.keySet()) {
+            remove(id);
+        }
+    }
+
+    /**
+     * Drops the sorted and name indexes and stops maintaining them, so that a bulk load only
+     * pays for the map, the totals and the filter indexes. Meant for startup: call it before
+     * other threads write.
+     */
+    public void deferIndexes() {
+        indexState = IndexState.DEFERRED;
+        sortedIndexes.clear();
+        nameIndex.clear();
+    }
+
+    /**
+     * Builds deferred indexes on a background thread while reads and writes carry on. Writes
+     * maintain the indexes from now on; the builder adds each product under its bin lock, so it
+     * never indexes a version that a concurrent write has already replaced.
+     *
+     * @return completes once listings use the indexes again
+     */
+    public CompletableFuture<Void> buildIndexes() {
+        if (indexState != IndexState.DEFERRED) {
+            return CompletableFuture.completedFuture(null);
+        }
+        indexState = IndexState.BUILDING;
+        return CompletableFuture.runAsync(() -> {
+            for (Long id : products.keySet()) {
+                products.computeIfPresent(id, (key, product) -> {
+                    sortedIndexes.apply(null, product); // adding an indexed product again is a no-op
+                    nameIndex.apply(null, product);
+                    return product;
+                });
+            }
+            indexState = IndexState.READY;
+        }, task -> {
+            Thread builder = new Thread(task, "catalog-indexer");
+            builder.setDaemon(true);
+            builder.start();
+        });
+    }
+
+    public boolean indexesReady() {
+        return indexState == IndexState.READY;
+    }
+
+    /**
+     * Registers the single receiver of every subsequent write as a {@link ProductChange}.
+     * It is called while the product's bin is locked, so the changes of one product reach it
+     * in the order they were applied; it must only hand the change off, never block.
+     */
+    public void setChangeListener(Consumer<ProductChange> changeListener) {
+        this.changeListener = changeListener;
+    }
+
+    public Optional<Product> get(Long id) {
+        return id == null ? Optional.empty() : Optional.ofNullable(products.get(id));
+    }
+
+    /**
+     * Atomically replaces the product with the given id by the updater's result, one version
+     * later. The updater runs while the product's bin is locked, so concurrent updates of the
+     * same product are applied one after another and none of them is lost. It returns a new
+     * product; returning the current one unchanged declines the update, and throwing leaves
+     * the product unchanged too, e.g. when the current version is not the expected one. An
+     * updater that introduces a new category runs again once the category is registered, so
+     * it must not count on running only once.
+     *
+     * @return the stored product after the update, or empty if no product has that id
+     */
+    public Optional<Product> update(Long id, UnaryOperator<Product> updater) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        AtomicBoolean changed = new AtomicBoolean();
+        AtomicReference<Product> unregistered = new AtomicReference<>();
+        Optional<Product> updated;
+        do {
+            updated = Optional.ofNullable(products.computeIfPresent(id, (key, current) -> {
+                Product next = updater.apply(current);
+                if (next == current) {
+                    return current;
+                }
+                if (!categories.isRegistered(next.getCategory())) {
+                    unregistered.set(next);
+                    return current;
+                }
+                next.setVersion(current.getVersion() + 1);
+                onChange(current, next);
+                changed.set(true);
+                return next;
+            }));
+        } while (registerCategory(unregistered.getAndSet(null)));
+        if (changed.get()) {
+            refreshColumns(id);
+            version.incrementAndGet();
+        }
+        return updated;
+    }
+
+    public boolean remove(Long id) {
+        if (id == null) {
+            return false;
+        }
+        AtomicBoolean removed = new AtomicBoolean();
+        products.computeIfPresent(id, (key, current) -> {
+            onChange(current, null);
+            removed.set(true);
+            return null;
+        });
+        if (removed.get()) {
+            refreshColumns(id);
+            version.incrementAndGet();
+        }
+        return removed.get();
+    }
+
+    /**
+     * Products expiring from one day to another, both included, ordered by expiration date and
+     * then id. Only the index entries of those days are read.
+     */
+    public List<Product> expiringBetween(LocalDate from, LocalDate to) {
+        List<Product> expiring = new ArrayList<>();
+        for (Long id : expirationIndex.between(from, to)) {
+            Product product = products.get(id);
+            // Rechecked: the product may have been changed since its index entry was read
+            if (product != null && product.getExpirationDate() != null
+                    && !product.getExpirationDate().isBefore(from) && !product.getExpirationDate().isAfter(to)) {
+                expiring.add(product);
+            }
+        }
+        return expiring;
+    }
+
+    /**
+     * Ids of the products still in stock, in one of the given categories (case-insensitive),
+     * whose expiration date is before the given day.
+     */
+    public List<Long> expiredInStock(LocalDate today, Collection<String> categories) {
+        Set<String> canonical = canonicalCategories(categories);
+        if (canonical.isEmpty()) {
+            return List.of();
+        }
+        List<Long> expired = new ArrayList<>();
+        for (Long id : expirationIndex.inStockBefore(today)) {
+            Product product = products.get(id);
+            if (product != null && canonical.contains(product.getCategory())) {
+                expired.add(id);
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * The spellings stored products use for the given categories, which compare equal to a
+     * stored product's category exactly when they match it case-insensitively. Categories no
+     * product ever had are left out.
+     */
+    public Set<String> canonicalCategories(Collection<String> categories) {
+        Set<String> canonical = new HashSet<>();
+        for (String category : categories) {
+            int code = this.categories.find(category);
+            if (code != CategoryDictionary.UNKNOWN) {
+                canonical.add(this.categories.name(code));
+            }
+        }
+        return canonical;
+    }
+
+    // Weakly consistent view: safe to iterate while other threads write
+    public Collection<Product> all() {
+        return Collections.unmodifiableCollection(products.values());
+    }
+
+    /**
+     * Products matching the category (case-insensitive) and stock-state filters; null means
+     * "any". Only the smaller of the matching index sets is visited, so the cost follows the
+     * number of matches, not the catalog size.
+     */
+    public Collection<Product> find(String category, Boolean inStock) {
+        ProductQuery query = canonical(ProductQuery.builder().category(category).inStock(inStock).build());
+        if (!query.isFiltered()) {
+            return all();
+        }
+        List<Product> matches = new ArrayList<>();
+        for (Product product : candidates(query)) {
+            if (query.matches(product)) {
+                matches.add(product);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * One sorted page of the products matching the query, plus the number of matches.
+     *
+     * Unfiltered listings walk the sort key's skip list and stop once the page is filled.
+     * Filtered listings visit only the candidates of the most selective index (name trigrams,
+     * category or stock state) and keep the first
+     * {@code offset + limit} of them in a bounded heap instead of sorting every match.
+     * With a cursor ({@link ProductQuery#getAfter()}) the offset counts from the cursor position,
+     * and the number of matches still covers the whole listing. While the indexes are being
+     * built, unfiltered listings take the bounded-heap path over the whole catalog.
+     * With columnar scans enabled, listings without a cursor whose best index still leaves most
+     * of the catalog run that path over the primitive columns instead.
+     * Otherwise a bounded-heap pass over enough candidates, e.g. a short name fragment that no
+     * trigram narrows, is split across cores and the partial heaps are merged.
+     */
+    public ProductPage query(ProductQuery query, int offset, int limit) {
+        query = canonical(query);
+        if (offset < 0 || limit <= 0) {
+            return new ProductPage(Collections.emptyList(), query.isFiltered() ? count(query) : size());
+        }
+        if (!query.isFiltered() && indexesReady()) {
+            List<Product> page = new ArrayList<>(Math.min(limit, 1024));
+            NavigableSet<Product> ordered = sortedIndexes.ordered(query.getSort(), query.isDescending());
+            if (query.getAfter() != null) {
+                ordered = ordered.tailSet(query.getAfter(), false); // seek straight to the cursor position
+            }
+            Iterator<Product> iterator = ordered.iterator();
+            for (int skipped = 0; skipped < offset && iterator.hasNext(); skipped++) {
+                iterator.next();
+            }
+            while (page.size() < limit && iterator.hasNext()) {
+                page.add(iterator.next());
+            }
+            return new ProductPage(page, size());
+        }
+
+        Set<Long> ids = candidateIds(query);
+        if (columns != null && query.getAfter() == null && (ids == null || ids.size() > size() / COLUMN_SCAN_DIVISOR)) {
+            return columnScan(query, offset, limit);
+        }
+
+        Collection<Product> candidates = ids == null ? all() : productsOf(ids);
+        ProductScan.Partial scanned = ProductScan.scan(candidates, ids == null ? size() : candidates.size(), query,
+                (int) Math.min((long) offset + limit, Integer.MAX_VALUE), parallelScanThreshold);
+        return new ProductPage(scanned.topK.from(offset), scanned.matches);
+    }
+
+    /**
+     * Whether {@link #query} answers the query by visiting products rather than by walking a
+     * sorted index: every filtered listing, and every listing while the indexes are being built.
+     * Its cost then grows with the catalog or a category, not with the page.
+     */
+    public boolean scans(ProductQuery query) {
+        return query.isFiltered() || !indexesReady();
+    }
+
+    /**
+     * All products matching the query in order, produced lazily for streaming exports.
+     *
+     * When an index narrows the query only its candidates are sorted; otherwise the sort key's
+     * skip list is walked and filtered on the fly, so nothing beyond the current row is held.
+     * While the indexes are being built, the matching products are sorted instead.
+     */
+    public Stream<Product> stream(ProductQuery query) {
+        query = canonical(query);
+        Set<Long> ids = candidateIds(query);
+        if (ids == null && indexesReady()) {
+            NavigableSet<Product> ordered = sortedIndexes.ordered(query.getSort(), query.isDescending());
+            if (query.getAfter() != null) {
+                ordered = ordered.tailSet(query.getAfter(), false);
+            }
+            return ordered.stream().filter(query::matches);
+        }
+        return (ids == null ? all() : productsOf(ids)).stream()
+                .filter(query::matches)
+                .filter(query::isAfterCursor)
+                .sorted(query.order());
+    }
+
+    /**
+     * Catalog version, incremented once per write (or batch) after the write is visible to
+     * readers, totals included. A response built after reading version {@code v} therefore
+     * reflects every write counted in {@code v}, and can be reused while the version stays
+     * {@code v}.
+     */
+    public long version() {
+        return version.get();
+    }
+
+    public int size() {
+        return products.size();
+    }
+
+    // Running totals, read in O(#categories)
+    public InventoryTotals totals() {
+        return aggregates.snapshot();
+    }
+
+    /**
+     * Consistency check: recomputes the totals from every product and compares them with the
+     * running aggregates. Only meaningful while no writes are in flight.
+     */
+    public boolean verifyTotals() {
+        return aggregates.snapshot().matches(InventoryTotals.recompute(products.values()), VALUE_TOLERANCE);
+    }
+
+    // The page's products are only looked up once the scan has picked their ids
+    private ProductPage columnScan(ProductQuery query, int offset, int limit) {
+        ProductColumns.Page scanned = columns.scan(query, offset, limit);
+        List<Product> page = new ArrayList<>(scanned.ids().length);
+        for (long id : scanned.ids()) {
+            Product product = products.get(id);
+            if (product != null && query.matches(product)) { // skips products changed since the scan
+                page.add(product);
+            }
+        }
+        return new ProductPage(page, scanned.matches());
+    }
+
+    private int count(ProductQuery query) {
+        return (int) candidates(query).stream().filter(query::matches).count();
+    }
+
+    /**
+     * A superset of the products matching the query, taken from whichever index gives the
+     * fewest candidates: the name trigrams, the category, or the stock state. Falls back to
+     * the whole catalog when no index applies.
+     */
+    private Collection<Product> candidates(ProductQuery query) {
+        Set<Long> ids = candidateIds(query);
+        return ids == null ? all() : productsOf(ids);
+    }
+
+    private List<Product> productsOf(Set<Long> ids) {
+        List<Product> candidates = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Product product = products.get(id);
+            if (product != null) {
+                candidates.add(product);
+            }
+        }
+        return candidates;
+    }
+
+    // Ids from the most selective applicable index, or null when no index applies
+    private Set<Long> candidateIds(ProductQuery query) {
+        Set<Long> smallest = null;
+        if (query.getCategory() != null) {
+            smallest = filterIndexes.category(query.getCategory());
+        }
+        if (query.getInStock() != null) {
+            smallest = smaller(smallest, filterIndexes.stock(query.getInStock()));
+        }
+        if (query.getName() != null && indexesReady()) {
+            smallest = smaller(smallest, nameIndex.candidates(query.getName()));
+        }
+        return smallest;
+    }
+
+    /**
+     * The query with its category replaced by the canonical spelling, so that rechecking the
+     * category of a stored product is an identity comparison.
+     */
+    private ProductQuery canonical(ProductQuery query) {
+        if (query.getCategory() == null) {
+            return query;
+        }
+        int code = categories.find(query.getCategory());
+        return code == CategoryDictionary.UNKNOWN ? query : query.withCategory(categories.name(code));
+    }
+
+    private static Set<Long> smaller(Set<Long> current, Set<Long> other) {
+        if (other == null) {
+            return current;
+        }
+        return current == null || other.size() < current.size() ? other : current;
+    }
+
+    private Product put(Product product) {
+        registerCategory(product);
+        products.compute(product.getId(), (key, current) -> {
+            onChange(current, product);
+            return product;
+        });
+        refreshColumns(product.getId());
+        version.incrementAndGet();
+        return product;
+    }
+
+    /**
+     * Registers the product's category, if it has none yet, before its bin is locked: growing
+     * the dictionary and the per-category structures takes locks.
+     *
+     * @return whether there was a product to register, i.e. a write declined for it is retried
+     */
+    private boolean registerCategory(Product product) {
+        if (product == null) {
+            return false;
+        }
+        int code = categories.code(product.getCategory());
+        aggregates.register(code);
+        filterIndexes.register(code);
+        return true;
+    }
+
+    // After the write, outside its bin lock: the columns' write lock may wait for a running scan
+    private void refreshColumns(Long id) {
+        if (columns != null) {
+            columns.refresh(id, products::get);
+        }
+    }
+
+    // Runs under the lock of the changed product's bin; before or after is null for inserts and deletes
+    private void onChange(Product before, Product after) {
+        onChange(before, after, null);
+    }
+
+    /**
+     * Keeps every derived structure in step with one write. Batched writes pass their own
+     * totals accumulator, which is published once the whole batch is stored; the running
+     * totals are plain sums, so the order in which deltas land does not matter.
+     */
+    private void onChange(Product before, Product after, InventoryAggregates.Batch batchTotals) {
+        if (after != null) {
+            // Not yet visible to readers, so its category can still be swapped for the shared instance
+            String category = categories.canonical(after.getCategory());
+            if (category != after.getCategory()) {
+                after.setCategory(category);
+            }
+        }
+        if (batchTotals != null) {
+            batchTotals.apply(before, after);
+        } else {
+            aggregates.apply(before, after);
+        }
+        filterIndexes.apply(before, after);
+        expirationIndex.apply(before, after);
+        if (indexState != IndexState.DEFERRED) {
+            sortedIndexes.apply(before, after);
+            nameIndex.apply(before, after);
+        }
+
+        Consumer<ProductChange> listener = changeListener;
+        if (listener != null) {
+            listener.accept(ProductChange.of(before, after));
+        }
+    }
+}
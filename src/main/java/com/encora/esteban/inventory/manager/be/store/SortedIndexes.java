@@ -0,0 +1,48 @@
+package com.encora.esteban.inventory.manager.be.store;
+
+import com.encora.esteban.inventory.manager.be.model.Product;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * One concurrent skip list per sort key, holding every product in that key's order.
+ * An unfiltered page is read by walking the list from either end, so its cost depends on
+ * the page position and size, not on the catalog size.
+ *
+ * Stored products are never mutated, so an entry can always be found again, and removed,
+ * through the same comparator it was inserted with.
+ */
+class SortedIndexes {
+
+    private final Map<ProductSort, ConcurrentSkipListSet<Product>> indexes = new EnumMap<>(ProductSort.class);
+
+    SortedIndexes() {
+        for (ProductSort sort : ProductSort.values()) {
+            indexes.put(sort, new ConcurrentSkipListSet<>(sort.comparator()));
+        }
+    }
+
+    // Called by the store with the product before and after a write; either side may be null
+    void apply(Product before, Product after) {
+        for (ConcurrentSkipListSet<Product> index : indexes.values()) {
+            if (before != null) {
+                index.remove(before);
+            }
+            if (after != null) {
+                index.add(after);
+            }
+        }
+    }
+
+    void clear() {
+        indexes.values().forEach(ConcurrentSkipListSet::clear);
+    }
+
+    NavigableSet<Product> ordered(ProductSort sort, boolean descending) {
+        ConcurrentSkipListSet<Product> index = indexes.get(sort);
+        return descending ? index.descendingSet() : index;
+    }
+}
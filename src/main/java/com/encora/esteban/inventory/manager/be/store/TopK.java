@@ -0,0 +1,51 @@
+package com.encora.esteban.inventory.manager.be.store;
+
+import com.encora.esteban.inventory.manager.be.model.Product;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Bounded heap keeping the first {@code capacity} products of an ordering, so a page can be
+ * cut out of the matches without sorting all of them: O(m log k) instead of O(m log m).
+ */
+final class TopK {
+
+    private final Comparator<Product> order;
+    private final int capacity;
+    // Reversed, so the head is the last product kept and is the one evicted first
+    private final PriorityQueue<Product> heap;
+
+    TopK(Comparator<Product> order, int capacity) {
+        this.order = order;
+        this.capacity = capacity;
+        this.heap = new PriorityQueue<>(Math.max(1, Math.min(capacity, 1024)), order.reversed());
+    }
+
+    void offer(Product product) {
+        if (heap.size() < capacity) {
+            heap.add(product);
+        } else if (capacity > 0 && order.compare(product, heap.peek()) < 0) {
+            heap.poll();
+            heap.add(product);
+        }
+    }
+
+    // Keeps the first products of both heaps; used to merge the partials of a partitioned scan
+    void addAll(TopK other) {
+        other.heap.forEach(this::offer);
+    }
+
+    // The kept products in order, starting at the given position
+    List<Product> from(int offset) {
+        if (offset >= heap.size()) {
+            return Collections.emptyList();
+        }
+        List<Product> sorted = new ArrayList<>(heap);
+        sorted.sort(order);
+        return sorted.subList(offset, sorted.size());
+    }
+}
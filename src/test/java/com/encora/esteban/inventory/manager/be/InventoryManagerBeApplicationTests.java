@@ -1,13 +1,98 @@
 package com.encora.esteban.inventory.manager.be;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
 class InventoryManagerBeApplicationTests {
 
+    @Value("${local.server.port}")
+    private int port;
+
     @Test
     void contextLoads() {
         // This test ensures the Spring context loads successfully.
     }
+
+    @Test
+    void productStream_writesTheListingAsNdjsonOverNonBlockingIo() throws Exception {
+        HttpClient client = HttpClient.newHttpClient();
+        URI base = URI.create("http://localhost:" + port + "/inventory/products");
+
+        HttpResponse<Stream<String>> streamed = client.send(
+                HttpRequest.newBuilder(URI.create(base + "/stream?sortBy=price&inStock=true")).build(),
+                HttpResponse.BodyHandlers.ofLines());
+        HttpResponse<Stream<String>> exported = client.send(
+                HttpRequest.newBuilder(URI.create(base + "/export?sortBy=price&inStock=true")).build(),
+                HttpResponse.BodyHandlers.ofLines());
+
+        assertEquals(200, streamed.statusCode());
+        assertTrue(streamed.headers().firstValue("Content-Type").orElse("").startsWith("application/x-ndjson"));
+        List<String> lines = streamed.body().toList();
+        assertTrue(lines.size() > 1);
+        assertEquals(exported.body().toList(), lines);
+    }
+
+    @Test
+    @Timeout(value = 20, threadMode = Timeout.ThreadMode.SEPARATE_THREAD)
+    void changeStream_pushesDurableChangesAndResumesAfterLastEventId() throws Exception {
+        HttpClient client = HttpClient.newHttpClient();
+        URI base = URI.create("http://localhost:" + port + "/inventory/products");
+        Iterator<String> live = client.send(HttpRequest.newBuilder(URI.create(base + "/changes")).build(),
+                HttpResponse.BodyHandlers.ofLines()).body().iterator();
+
+        HttpRequest create = HttpRequest.newBuilder(base)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"name\":\"Streamed\",\"category\":\"Tools\",\"unitPrice\":2,\"quantityInStock\":3}"))
+                .build();
+        client.send(create, HttpResponse.BodyHandlers.discarding());
+        client.send(create, HttpResponse.BodyHandlers.discarding());
+
+        List<String> first = nextEvent(live);
+        List<String> second = nextEvent(live);
+        assertEquals("event:create", first.get(1));
+        assertTrue(first.get(2).contains("\"Streamed\""));
+        assertEquals("event:create", second.get(1));
+
+        // A client that saw only the first event gets the second one again on reconnect
+        Iterator<String> resumed = client.send(HttpRequest.newBuilder(URI.create(base + "/changes"))
+                        .header("Last-Event-ID", first.get(0).substring("id:".length())).build(),
+                HttpResponse.BodyHandlers.ofLines()).body().iterator();
+        assertEquals(second, nextEvent(resumed));
+
+        // Ids from another run cannot be resumed
+        Iterator<String> stale = client.send(HttpRequest.newBuilder(URI.create(base + "/changes"))
+                        .header("Last-Event-ID", "previous-run-1").build(),
+                HttpResponse.BodyHandlers.ofLines()).body().iterator();
+        assertEquals("event:reset", nextEvent(stale).get(1));
+    }
+
+    // The id, event and data lines of the next event, skipping heartbeats and the reconnect delay
+    private static List<String> nextEvent(Iterator<String> lines) {
+        List<String> event = new ArrayList<>();
+        while (lines.hasNext()) {
+            String line = lines.next();
+            if (line.isEmpty() && !event.isEmpty()) {
+                return event;
+            }
+            if (!line.isEmpty() && !line.startsWith(":") && !line.startsWith("retry:")) {
+                event.add(line);
+            }
+        }
+        throw new AssertionError("Stream ended");
+    }
 }
@@ -0,0 +1,102 @@
+package com.encora.esteban.inventory.manager.be.controller;
+
+import com.encora.esteban.inventory.manager.be.service.ProductService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChangeStreamsTest {
+
+    private ProductService productService;
+    private ChangeStreams changeStreams;
+
+    @BeforeEach
+    void setup() {
+        productService = new ProductService();
+        changeStreams = new ChangeStreams(productService, new SimpleMeterRegistry(), 2); // a stalled stream may hold only one
+        changeStreams.start();
+    }
+
+    @AfterEach
+    void stop() {
+        changeStreams.stop();
+    }
+
+    @Test
+    @Timeout(10)
+    void follow_clientThatNeverReads_doesNotHoldUpOtherStreams() throws Exception {
+        StalledEmitter stalled = new StalledEmitter();
+        RecordingEmitter recording = new RecordingEmitter();
+        changeStreams.follow(null, stalled);
+        changeStreams.follow(null, recording);
+        stalled.stall(); // from here on its sends block, like a write to a full TCP window
+
+        productService.adjustStock(1L, -1);
+        assertTrue(stalled.blocked.await(5, TimeUnit.SECONDS));
+        productService.adjustStock(1L, -1);
+        productService.adjustStock(2L, -1);
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(recording.events.poll(5, TimeUnit.SECONDS).contains("event:stock"));
+        }
+    }
+
+    // Its sends block once stalled, until the test ends
+    private static final class StalledEmitter extends SseEmitter {
+
+        private final CountDownLatch blocked = new CountDownLatch(1);
+        private volatile boolean stalled;
+
+        StalledEmitter() {
+            super(0L);
+        }
+
+        void stall() {
+            stalled = true;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            if (stalled) {
+                blocked.countDown();
+                try {
+                    new CountDownLatch(1).await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e); // shutting down
+                }
+            }
+            super.send(builder);
+        }
+    }
+
+    // Keeps the text of every change event it sends
+    private static final class RecordingEmitter extends SseEmitter {
+
+        private final BlockingQueue<String> events = new LinkedBlockingQueue<>();
+
+        RecordingEmitter() {
+            super(0L);
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            StringBuilder text = new StringBuilder();
+            builder.build().forEach(part -> text.append(part.getData()));
+            if (text.indexOf("event:") >= 0) {
+                events.add(text.toString());
+            }
+            super.send(builder);
+        }
+    }
+}
@@ -1,9 +1,13 @@
 package com.encora.esteban.inventory.manager.be.controller;
 
 import com.encora.esteban.inventory.manager.be.model.Product;
+import com.encora.esteban.inventory.manager.be.service.InsufficientStockException;
+import com.encora.esteban.inventory.manager.be.service.ListingRejectedException;
 import com.encora.esteban.inventory.manager.be.service.ProductService;
+import com.encora.esteban.inventory.manager.be.service.VersionConflictException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import com.fasterxml.jackson.databind.SerializationFeature;
 
 import org.junit.jupiter.api.BeforeEach;
@@ -12,33 +16,54 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
 
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(InventoryController.class)
+@Import({ListingCache.class, SimpleMeterRegistry.class})
 class InventoryControllerTest {
 
+    // The listing cache outlives a test, so every test lists at a catalog version of its own
+    private static final AtomicLong VERSIONS = new AtomicLong();
+
     @Autowired
     private MockMvc mockMvc;
 
     @MockBean
     private ProductService productService;
 
+    @MockBean
+    private ChangeStreams changeStreams;
+
     private Product sampleProduct;
     private ObjectMapper mapper;
 
     @BeforeEach
     void setup() {
+        when(productService.catalogVersion()).thenReturn(VERSIONS.incrementAndGet());
         sampleProduct = new Product(
                 1L,
                 "Laptop",
@@ -72,6 +97,57 @@ class InventoryControllerTest {
                 .andExpect(jsonPath("$.products[0].name").value("Laptop"));
     }
 
+    @Test
+    void getProducts_repeatedAtSameVersion_isCachedAndHonoursIfNoneMatch() throws Exception {
+        when(productService.getProducts(null, "Food", null, 0, 10, "name", "asc"))
+                .thenReturn(Map.of("products", List.of(sampleProduct)));
+
+        String etag = mockMvc.perform(get("/inventory/products").param("category", "Food"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andReturn().getResponse().getHeader("ETag");
+        mockMvc.perform(get("/inventory/products").param("category", "Food"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", etag))
+                .andExpect(jsonPath("$.products[0].name").value("Laptop"));
+        mockMvc.perform(get("/inventory/products").param("category", "Food").header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        verify(productService, times(1)).getProducts(null, "Food", null, 0, 10, "name", "asc");
+
+        // Any write moves the version on: the old ETag no longer matches and the listing is rebuilt
+        when(productService.catalogVersion()).thenReturn(VERSIONS.incrementAndGet());
+        mockMvc.perform(get("/inventory/products").param("category", "Food").header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", not(etag)));
+
+        verify(productService, times(2)).getProducts(null, "Food", null, 0, 10, "name", "asc");
+    }
+
+    @Test
+    void getProducts_filterValuedNull_isNotServedTheUnfilteredListing() throws Exception {
+        when(productService.getProducts(null, null, null, 0, 10, "name", "asc"))
+                .thenReturn(Map.of("products", List.of(sampleProduct)));
+        when(productService.getProducts("null", null, null, 0, 10, "name", "asc"))
+                .thenReturn(Map.of("products", List.of()));
+
+        mockMvc.perform(get("/inventory/products"))
+                .andExpect(jsonPath("$.products.length()").value(1));
+        mockMvc.perform(get("/inventory/products").param("name", "null"))
+                .andExpect(jsonPath("$.products.length()").value(0));
+    }
+
+    @Test
+    void getProducts_malformedCursor_isBadRequestEvenIfETagMatches() throws Exception {
+        doThrow(new IllegalArgumentException("Malformed cursor")).when(productService).checkCursor("bogus", "name", "asc");
+        String etag = mockMvc.perform(get("/inventory/products"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/inventory/products").param("cursor", "bogus").header("If-None-Match", etag))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     void addProduct_returnsCreatedProduct() throws Exception {
         when(productService.addProduct(any(Product.class))).thenReturn(sampleProduct);
@@ -85,7 +161,7 @@ class InventoryControllerTest {
 
     @Test
     void updateProduct_returnsUpdatedProduct() throws Exception {
-        when(productService.updateProduct(eq(1L), any(Product.class))).thenReturn(true);
+        when(productService.updateProduct(eq(1L), any(Product.class), isNull())).thenReturn(Optional.of(sampleProduct));
 
         mockMvc.perform(put("/inventory/products/1")
                         .contentType(MediaType.APPLICATION_JSON)
@@ -93,6 +169,28 @@ class InventoryControllerTest {
                 .andExpect(status().isOk());
     }
 
+    @Test
+    void updateProduct_withIfMatch_updatesOnlyTheVersionRead() throws Exception {
+        Product updated = sampleProduct.toBuilder().version(4).build();
+        when(productService.updateProduct(eq(1L), any(Product.class), eq(3L))).thenReturn(Optional.of(updated));
+        when(productService.updateProduct(eq(1L), any(Product.class), eq(2L)))
+                .thenThrow(new VersionConflictException(1L, 2, 3));
+
+        mockMvc.perform(put("/inventory/products/1")
+                        .header("If-Match", "\"3\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writeValueAsString(sampleProduct)))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"4\""));
+
+        mockMvc.perform(put("/inventory/products/1")
+                        .header("If-Match", "\"2\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writeValueAsString(sampleProduct)))
+                .andExpect(status().isPreconditionFailed())
+                .andExpect(header().string("ETag", "\"3\""));
+    }
+
     @Test
     void deleteProduct_returnsSuccess() throws Exception {
         when(productService.deleteProductById(1L)).thenReturn(true);
@@ -100,4 +198,174 @@ class InventoryControllerTest {
         mockMvc.perform(delete("/inventory/products/1"))
                 .andExpect(status().isOk());
     }
+
+    @Test
+    void getProduct_returnsProductById() throws Exception {
+        when(productService.getProductById(1L)).thenReturn(Optional.of(sampleProduct));
+
+        mockMvc.perform(get("/inventory/products/1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("Laptop"));
+    }
+
+    @Test
+    void getProduct_unknownId_returnsNotFound() throws Exception {
+        when(productService.getProductById(2L)).thenReturn(Optional.empty());
+
+        mockMvc.perform(get("/inventory/products/2"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void getProducts_withInvalidCursor_returnsBadRequest() throws Exception {
+        when(productService.getProductsAfter("bogus", null, null, null, 0, 10, "name", "asc"))
+                .thenThrow(new IllegalArgumentException("Malformed cursor"));
+
+        mockMvc.perform(get("/inventory/products").param("cursor", "bogus"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void exportProducts_streamsNdjson() throws Exception {
+        Product second = new Product(2L, "Mouse", "Electronics", 20.0, null, 3, LocalDate.now(), LocalDate.now());
+        when(productService.streamProducts(null, "Electronics", null, "name", "asc"))
+                .thenReturn(Stream.of(sampleProduct, second));
+
+        MvcResult result = mockMvc.perform(get("/inventory/products/export").param("category", "Electronics"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andReturn().getResponse().getContentAsString();
+        String[] lines = body.split("\n");
+        assertEquals(2, lines.length);
+        assertEquals("Laptop", mapper.readTree(lines[0]).get("name").asText());
+        assertEquals("Mouse", mapper.readTree(lines[1]).get("name").asText());
+    }
+
+    @Test
+    void addProducts_createsBatch() throws Exception {
+        when(productService.addProducts(any())).thenReturn(List.of(sampleProduct));
+
+        mockMvc.perform(post("/inventory/products/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writeValueAsString(List.of(sampleProduct))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name").value("Laptop"));
+    }
+
+    @Test
+    void addProducts_invalidProduct_rejectsWholeBatch() throws Exception {
+        Product food = new Product(null, "Milk", "Food", 2.0, null, 1, null, null); // no expiration date
+
+        mockMvc.perform(post("/inventory/products/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writeValueAsString(List.of(sampleProduct, food))))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.index").value(1));
+
+        verify(productService, never()).addProducts(any());
+    }
+
+    @Test
+    void writes_expirationDateBeyondStoredRange_areBadRequests() throws Exception {
+        String farFuture = mapper.writeValueAsString(sampleProduct).replace("2025-12-31", "+1000000-01-01");
+
+        mockMvc.perform(post("/inventory/products").contentType(MediaType.APPLICATION_JSON).content(farFuture))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(put("/inventory/products/1").contentType(MediaType.APPLICATION_JSON).content(farFuture))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/inventory/products/batch").contentType(MediaType.APPLICATION_JSON).content("[" + farFuture + "]"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Expiration date must be between 0001-01-01 and 9999-12-31"));
+
+        verify(productService, never()).addProduct(any());
+        verify(productService, never()).updateProduct(any(), any(), any());
+        verify(productService, never()).addProducts(any());
+    }
+
+    @Test
+    void updateProducts_duplicateId_rejectsWholeBatch() throws Exception {
+        Product renamed = sampleProduct.toBuilder().name("Renamed").build();
+
+        mockMvc.perform(put("/inventory/products/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writeValueAsString(List.of(sampleProduct, renamed))))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.index").value(1))
+                .andExpect(jsonPath("$.error").value("Duplicate id"));
+
+        verify(productService, never()).updateProducts(any());
+    }
+
+    @Test
+    void importProducts_readsCsv() throws Exception {
+        String csv = """
+                name,category,unitPrice,quantityInStock,expirationDate
+                "Mouse, wireless",Electronics,25.5,3,
+                Milk,Food,2,10,2030-01-31
+                """;
+
+        mockMvc.perform(post("/inventory/products/import")
+                        .contentType("text/csv")
+                        .content(csv))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.created").value(2));
+
+        verify(productService).addProducts(argThat(products -> products.size() == 2
+                && products.get(0).getName().equals("Mouse, wireless")
+                && products.get(1).getExpirationDate().equals(LocalDate.of(2030, 1, 31))));
+    }
+
+    @Test
+    void deleteProducts_reportsMissingIds() throws Exception {
+        when(productService.deleteProducts(List.of(1L, 99L))).thenReturn(List.of(99L));
+
+        mockMvc.perform(delete("/inventory/products/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[1, 99]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.deleted").value(1))
+                .andExpect(jsonPath("$.notFound[0]").value(99));
+    }
+
+    @Test
+    void getExpiringProducts_parsesIsoDates() throws Exception {
+        LocalDate from = LocalDate.of(2025, 12, 1);
+        LocalDate to = LocalDate.of(2025, 12, 31);
+        when(productService.getProductsExpiringBetween(from, to)).thenReturn(List.of(sampleProduct));
+
+        mockMvc.perform(get("/inventory/products/expiring").param("from", "2025-12-01").param("to", "2025-12-31"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].expirationDate").value("2025-12-31"));
+    }
+
+    @Test
+    void adjustStock_beyondAvailable_isConflict() throws Exception {
+        when(productService.adjustStock(1L, -3)).thenReturn(Optional.of(sampleProduct));
+        when(productService.adjustStock(1L, -30)).thenThrow(new InsufficientStockException(1L, 10, -30));
+
+        mockMvc.perform(post("/inventory/products/1/stock")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"delta\": -3}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.quantityInStock").value(10));
+        mockMvc.perform(post("/inventory/products/1/stock")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"delta\": -30}"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.quantityInStock").value(10));
+    }
+
+    @Test
+    void getProducts_shedListing_isServiceUnavailable() throws Exception {
+        when(productService.getProducts(null, "Food", null, 0, 10, "name", "asc"))
+                .thenThrow(new ListingRejectedException("Too many listings scanning the catalog"));
+
+        mockMvc.perform(get("/inventory/products").param("category", "Food"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "1"));
+    }
 }
@@ -0,0 +1,171 @@
+package com.encora.esteban.inventory.manager.be.persistence;
+
+import com.encora.esteban.inventory.manager.be.model.Product;
+import com.encora.esteban.inventory.manager.be.service.JournalFailedException;
+import com.encora.esteban.inventory.manager.be.service.ProductService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CatalogPersistenceTest {
+
+    private static final long SEGMENT_BYTES = 1 << 20;
+
+    private final ObjectMapper mapper = new ObjectMapper().findAndRegisterModules();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void restart_recoversEveryAcknowledgedWrite() throws IOException {
+        ProductService before = new ProductService();
+        try (CatalogPersistence persistence = start(before)) {
+            Product added = before.addProduct(product("Durable"));
+            before.updateProduct(1L, product("Renamed"));
+            before.deleteProductById(2L);
+            before.markProductOutOfStock(added.getId());
+            before.addProducts(List.of(product("Batch A"), product("Batch B")));
+        }
+
+        ProductService after = new ProductService();
+        try (CatalogPersistence ignored = start(after)) {
+            assertEquals(catalog(before), catalog(after));
+        }
+    }
+
+    @Test
+    @Timeout(10)
+    void writeThatChangesNothing_returnsWithoutWaitingForFlush() throws IOException {
+        ProductService service = new ProductService();
+        try (CatalogPersistence persistence = start(service)) {
+            assertFalse(service.updateProduct(999L, product("Missing")));
+            assertTrue(service.addProducts(List.of()).isEmpty());
+        }
+    }
+
+    @Test
+    void restart_neverReusesIdOfDeletedProduct() throws IOException {
+        ProductService before = new ProductService();
+        long deletedId;
+        try (CatalogPersistence persistence = start(before)) {
+            deletedId = before.addProduct(product("Short-lived")).getId();
+            before.deleteProductById(deletedId);
+        }
+
+        ProductService after = new ProductService();
+        try (CatalogPersistence ignored = start(after)) {
+            assertTrue(after.addProduct(product("Next")).getId() > deletedId);
+        }
+    }
+
+    @Test
+    void compact_foldsClosedSegmentsIntoOneSnapshot() throws IOException {
+        ProductService before = new ProductService();
+        try (CatalogPersistence persistence = start(before)) {
+            before.addProduct(product("Compacted"));
+            before.deleteProductById(3L);
+            persistence.compact();
+            before.updateProduct(4L, product("After snapshot"));
+            persistence.compact();
+            before.addProduct(product("In the log only"));
+
+            assertEquals(1, PersistenceFiles.snapshots(directory).size());
+            assertEquals(1, PersistenceFiles.segments(directory).size());
+        }
+
+        ProductService after = new ProductService();
+        try (CatalogPersistence ignored = start(after)) {
+            assertEquals(catalog(before), catalog(after));
+        }
+    }
+
+    @Test
+    void restart_skipsTornLastChange() throws IOException {
+        ProductService before = new ProductService();
+        try (CatalogPersistence persistence = start(before)) {
+            before.addProduct(product("Complete"));
+        }
+        Path segment = PersistenceFiles.segments(directory).get(0);
+        Files.writeString(segment, "{\"sequence\":2,\"type\":\"CRE", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        ProductService after = new ProductService();
+        try (CatalogPersistence ignored = start(after)) {
+            assertEquals(catalog(before), catalog(after));
+        }
+    }
+
+    @Test
+    void snapshot_roundTripsEveryColumn() throws IOException {
+        List<Product> products = List.of(
+                new Product(1L, "Café crème ☕", "Food", 3.75, LocalDate.of(2026, 2, 1), 12, LocalDate.of(2025, 1, 1), LocalDate.of(2025, 3, 1)),
+                new Product(2L, null, null, 0, null, 0, null, null),
+                new Product(5L, "", "Toys", -1.5, LocalDate.of(1999, 12, 31), -3, LocalDate.of(2025, 1, 1), LocalDate.of(2025, 1, 1)));
+        Path file = PersistenceFiles.snapshot(directory, 7);
+        try (CatalogSnapshots.Writer out = CatalogSnapshots.create(file)) {
+            products.forEach(out::add);
+            out.commit();
+        }
+
+        List<Product> read = new ArrayList<>();
+        CatalogSnapshots.read(file, read::add);
+
+        assertEquals(products, read);
+        assertEquals(List.of(file), PersistenceFiles.snapshots(directory));
+    }
+
+    @Test
+    @Timeout(10)
+    void changeLogWriteFailure_failsTheWriteAndRefusesLaterOnes() throws IOException {
+        ProductService service = new ProductService();
+        List<FileChannel> segments = new ArrayList<>();
+        try (ChangeLog changeLog = new ChangeLog(directory, mapper, SEGMENT_BYTES, 0, path -> {
+            FileChannel segment = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            segments.add(segment);
+            return segment;
+        })) {
+            service.attachJournal(changeLog);
+            service.addProduct(product("Durable"));
+            long published = service.changeFeed().lastSequence();
+            segments.get(0).close(); // the next write fails with ClosedChannelException, an IOException
+
+            JournalFailedException failed = assertThrows(JournalFailedException.class,
+                    () -> service.addProduct(product("Not durable")));
+            assertInstanceOf(IOException.class, failed.getCause());
+            assertThrows(JournalFailedException.class, () -> service.adjustStock(1L, 1));
+
+            assertEquals(2, service.getProductById(1L).orElseThrow().getQuantityInStock()); // refused before it was applied
+            assertEquals(published, service.changeFeed().lastSequence()); // the change that was lost is never published
+            assertTrue(changeLog.sync().isCompletedExceptionally());
+        }
+    }
+
+    private CatalogPersistence start(ProductService service) throws IOException {
+        CatalogPersistence persistence = new CatalogPersistence(service, mapper, directory, SEGMENT_BYTES);
+        persistence.start().join();
+        return persistence;
+    }
+
+    private static Map<Long, Product> catalog(ProductService service) {
+        return service.allProducts().stream().collect(Collectors.toMap(Product::getId, Function.identity()));
+    }
+
+    private static Product product(String name) {
+        return new Product(null, name, "Food", 2.5, LocalDate.of(2026, 6, 1), 7, null, null);
+    }
+}
@@ -0,0 +1,148 @@
+package com.encora.esteban.inventory.manager.be.replication;
+
+import com.encora.esteban.inventory.manager.be.InventoryManagerBeApplication;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// A leader and two followers on localhost, each a full application on a port of its own
+class ReplicationTest {
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private final List<ConfigurableApplicationContext> instances = new ArrayList<>();
+
+    @AfterEach
+    void stopInstances() {
+        for (int i = instances.size() - 1; i >= 0; i--) { // followers first
+            instances.get(i).close();
+        }
+    }
+
+    @Test
+    @Timeout(60)
+    void followers_copyTheLeaderThenApplyItsChangesAndRedirectWrites() throws Exception {
+        URI leader = start();
+        send(leader, "/inventory/products/2", "DELETE", null); // made before the followers start: part of the copy
+        URI first = start("--inventory.replication.leader-url=" + leader, "--inventory.replication.retry-delay=100ms");
+        URI second = start("--inventory.replication.leader-url=" + leader, "--inventory.replication.retry-delay=100ms");
+
+        String created = send(leader, "/inventory/products", "POST",
+                "{\"name\":\"Replicated\",\"category\":\"Tools\",\"unitPrice\":2,\"quantityInStock\":3}").body();
+        long id = Long.parseLong(created.replaceAll(".*\"id\":(\\d+).*", "$1"));
+        send(leader, "/inventory/products/" + id + "/stock", "POST", "{\"delta\":-1}");
+
+        for (URI follower : List.of(first, second)) {
+            HttpResponse<String> replicated = await(follower, "/inventory/products/" + id,
+                    response -> response.statusCode() == 200 && response.body().contains("\"quantityInStock\":2"));
+            assertEquals(send(leader, "/inventory/products/" + id, "GET", null).headers().firstValue("ETag"),
+                    replicated.headers().firstValue("ETag")); // versions are replicated too
+            assertEquals(404, send(follower, "/inventory/products/2", "GET", null).statusCode());
+        }
+
+        HttpResponse<String> write = send(first, "/inventory/products/1/outofstock", "POST", null);
+        assertEquals(307, write.statusCode());
+        assertEquals(leader + "/inventory/products/1/outofstock", write.headers().firstValue("Location").orElseThrow());
+    }
+
+    @Test
+    @Timeout(120)
+    void follower_keepsUpWithWritesMadeWhileItCopies() throws Exception {
+        URI leader = start();
+        for (int round = 0; round < 3; round++) { // a catalog large enough that copying it takes seconds
+            StringBuilder batch = new StringBuilder("[");
+            for (int i = 0; i < 20_000; i++) {
+                batch.append(i > 0 ? "," : "").append("{\"name\":\"Bulk ").append(i)
+                        .append("\",\"category\":\"Bulk\",\"unitPrice\":1,\"quantityInStock\":1}");
+            }
+            send(leader, "/inventory/products/batch", "POST", batch.append("]").toString());
+        }
+        // Large changes, so the stream outgrows the socket buffers early in the copy
+        String category = "Busy ".repeat(400);
+        StringBuilder busy = new StringBuilder("[");
+        for (int i = 0; i < 100; i++) {
+            busy.append(i > 0 ? "," : "").append("{\"name\":\"Busy ").append(i).append("\",\"category\":\"")
+                    .append(category).append("\",\"unitPrice\":1,\"quantityInStock\":1}");
+        }
+        String created = send(leader, "/inventory/products/batch", "POST", busy.append("]").toString()).body();
+        long firstId = Long.parseLong(created.replaceAll("(?s)^\\[\\{\"id\":(\\d+).*", "$1"));
+
+        StringBuilder adjustments = new StringBuilder("[");
+        for (int i = 0; i < 100; i++) {
+            adjustments.append(i > 0 ? "," : "").append("{\"id\":").append(firstId + i).append(",\"delta\":1}");
+        }
+        String restock = adjustments.append("]").toString();
+        AtomicBoolean writing = new AtomicBoolean(true);
+        Thread writer = new Thread(() -> {
+            try {
+                while (writing.get()) { // thousands of changes a second, more during the copy than the leader buffers
+                    send(leader, "/inventory/products/stock", "POST", restock);
+                    Thread.sleep(20);
+                }
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        writer.start();
+        try {
+            URI follower = start("--inventory.replication.leader-url=" + leader, "--inventory.replication.retry-delay=100ms");
+            await(follower, "/inventory/products/" + firstId, response -> response.statusCode() == 200);
+            long until = System.nanoTime() + TimeUnit.SECONDS.toNanos(3);
+            while (System.nanoTime() < until) { // not copying again, which would stop it serving
+                assertEquals(200, send(follower, "/inventory/products/" + firstId, "GET", null).statusCode());
+                Thread.sleep(50);
+            }
+            writing.set(false);
+            writer.join();
+
+            String stock = send(leader, "/inventory/products/" + firstId, "GET", null).body()
+                    .replaceAll(".*(\"quantityInStock\":\\d+).*", "$1");
+            await(follower, "/inventory/products/" + firstId, response -> response.body().contains(stock));
+        } finally {
+            writing.set(false);
+            writer.join();
+        }
+    }
+
+    // Starts an instance on a free port and returns its base URL
+    private URI start(String... args) {
+        List<String> all = new ArrayList<>(List.of(args));
+        all.add("--server.port=0"); // command-line arguments override application.properties
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(InventoryManagerBeApplication.class)
+                .run(all.toArray(String[]::new));
+        instances.add(context);
+        return URI.create("http://localhost:" + context.getEnvironment().getProperty("local.server.port"));
+    }
+
+    private HttpResponse<String> await(URI instance, String path, Predicate<HttpResponse<String>> condition) throws Exception {
+        while (true) {
+            HttpResponse<String> response = send(instance, path, "GET", null);
+            if (condition.test(response)) {
+                return response;
+            }
+            Thread.sleep(50);
+        }
+    }
+
+    private HttpResponse<String> send(URI instance, String path, String method, String json) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(instance + path))
+                .method(method, json == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(json));
+        if (json != null) {
+            request.header("Content-Type", "application/json");
+        }
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -1,12 +1,26 @@
 package com.encora.esteban.inventory.manager.be.service;
 
 import com.encora.esteban.inventory.manager.be.model.Product;
+import com.encora.esteban.inventory.manager.be.model.StockAdjustment;
+import com.encora.esteban.inventory.manager.be.store.ProductChange;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.time.Duration;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Map;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -135,5 +149,339 @@ class ProductServiceTest {
         assertEquals(10, restoredProduct.getQuantityInStock());
     }
 
+    @Test
+    void idOperations_unknownId_returnFalse() {
+        assertFalse(productService.updateProduct(999L, new Product()));
+        assertFalse(productService.markProductOutOfStock(999L));
+        assertFalse(productService.restoreProductStock(999L));
+        assertFalse(productService.deleteProductById(999L));
+        assertTrue(productService.getProductById(999L).isEmpty());
+    }
+
+    @Test
+    void deleteProductById_removesOnlyThatProduct() {
+        Product first = productService.addProduct(new Product(null, "First", "Food", 10, null, 1, null, null));
+        Product second = productService.addProduct(new Product(null, "Second", "Food", 10, null, 1, null, null));
+
+        assertTrue(productService.deleteProductById(first.getId()));
+
+        assertTrue(productService.getProductById(first.getId()).isEmpty());
+        assertEquals("Second", productService.getProductById(second.getId()).orElseThrow().getName());
+        assertFalse(productService.deleteProductById(first.getId()));
+    }
+
+    @Test
+    void addProduct_afterDelete_neverReusesId() {
+        Product deleted = productService.addProduct(new Product(null, "Gone", "Food", 10, null, 1, null, null));
+        productService.deleteProductById(deleted.getId());
+
+        Product added = productService.addProduct(new Product(null, "New", "Food", 10, null, 1, null, null));
+
+        assertNotEquals(deleted.getId(), added.getId());
+    }
+
+    @Test
+    void getProducts_filtersByCategoryAndStock() {
+        Product bread = productService.addProduct(new Product(null, "Bread", "Food", 3, LocalDate.of(2030, 1, 1), 0, null, null));
+
+        List<Product> products = (List<Product>) productService
+                .getProducts(null, "food", false, 0, 100, "name", "asc")
+                .get("products");
+
+        assertEquals(List.of(bread), products);
+    }
+
+    @Test
+    void getProductsAfter_continuesFromNextCursor() {
+        Map<String, Object> first = productService.getProducts(null, null, null, 0, 5, "price", "desc");
+        String cursor = (String) first.get("nextCursor");
+        assertNotNull(cursor);
+
+        Map<String, Object> second = productService.getProductsAfter(cursor, null, null, null, 1, 5, "price", "desc");
+
+        assertEquals(
+                productService.getProducts(null, null, null, 1, 5, "price", "desc").get("products"),
+                second.get("products"));
+        assertThrows(IllegalArgumentException.class,
+                () -> productService.getProductsAfter(cursor, null, null, null, 1, 5, "name", "desc"));
+    }
+
+    @Test
+    void getProducts_recordsListingMetrics() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ProductService service = new ProductService(registry);
+
+        service.getProducts("mo", "Electronics", null, 0, 10, "price", "desc");
+        service.getProducts(null, null, true, 0, 10, "price", "desc");
+
+        assertEquals(1, registry.get("inventory.listing.filters").tag("filter", "name").counter().count());
+        assertEquals(1, registry.get("inventory.listing.filters").tag("filter", "inStock").counter().count());
+        assertEquals(2, registry.get("inventory.listing.sort").tags("sortBy", "price", "sortOrder", "desc").counter().count());
+        assertEquals(11, registry.get("inventory.products").gauge().value());
+    }
+
+    @Test
+    void publishProducts_emitsOnlyWhatIsRequested() {
+        List<Product> expected;
+        try (var products = productService.streamProducts(null, null, null, "price", "asc")) {
+            expected = products.toList();
+        }
+        List<Product> received = new ArrayList<>();
+        AtomicBoolean completed = new AtomicBoolean();
+        AtomicReference<Flow.Subscription> subscription = new AtomicReference<>();
+
+        productService.publishProducts(null, null, null, "price", "asc").subscribe(new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription s) {
+                subscription.set(s);
+            }
+
+            @Override
+            public void onNext(Product product) {
+                received.add(product);
+            }
+
+            @Override
+            public void onError(Throwable failure) {
+                fail(failure);
+            }
+
+            @Override
+            public void onComplete() {
+                completed.set(true);
+            }
+        });
+
+        assertTrue(received.isEmpty());
+        subscription.get().request(2);
+        assertEquals(expected.subList(0, 2), received);
+        assertFalse(completed.get());
+
+        subscription.get().request(Long.MAX_VALUE);
+        assertEquals(expected, received);
+        assertTrue(completed.get());
+    }
+
+    @Test
+    void changeFeed_numbersEveryWriteAndMarksStockOnlyUpdates() {
+        Product product = new Product();
+        product.setName("Feed");
+        product.setCategory("Food");
+        product.setUnitPrice(3);
+        product.setQuantityInStock(5);
+        Long id = productService.addProduct(product).getId();
+        productService.markProductOutOfStock(id);
+        productService.updateProduct(id, product.toBuilder().name("Renamed").build());
+        productService.deleteProductById(id);
+
+        List<ProductChange> changes = productService.changeFeed().since(0);
+
+        assertEquals(List.of(1L, 2L, 3L, 4L), changes.stream().map(ProductChange::getSequence).toList());
+        assertEquals(List.of(ProductChange.Type.CREATE, ProductChange.Type.STOCK, ProductChange.Type.UPDATE, ProductChange.Type.DELETE),
+                changes.stream().map(ProductChange::getType).toList());
+        assertEquals(List.of(), productService.changeFeed().since(4));
+        assertNull(productService.changeFeed().since(5)); // never published
+    }
+
+    @Test
+    void changeFeed_publishesOnlyWhatIsDurableAndForgetsBeyondCapacity() {
+        ChangeFeed feed = new ChangeFeed(2);
+        ProductChange change = new ProductChange(0, ProductChange.Type.DELETE, 1L, null);
+        feed.stage(change);
+        feed.stage(change);
+
+        assertEquals(List.of(), feed.since(0));
+        feed.publish(feed.staged());
+        assertEquals(2, feed.since(0).size());
+
+        feed.stage(change);
+        feed.publish(feed.staged());
+        assertNull(feed.since(0)); // change 1 has left the buffer
+        assertEquals(List.of(2L, 3L), feed.since(1).stream().map(ProductChange::getSequence).toList());
+    }
+
+    @Test
+    void updateProduct_withExpectedVersion_rejectsConcurrentEdits() {
+        Product mouse = productService.getProductById(1L).orElseThrow();
+        long read = mouse.getVersion();
+
+        Product first = productService.updateProduct(1L, mouse.toBuilder().name("First").build(), read).orElseThrow();
+        VersionConflictException conflict = assertThrows(VersionConflictException.class,
+                () -> productService.updateProduct(1L, mouse.toBuilder().name("Second").build(), read));
+
+        assertEquals(read + 1, first.getVersion());
+        assertEquals(read + 1, conflict.getCurrentVersion());
+        assertEquals("First", productService.getProductById(1L).orElseThrow().getName());
+        assertTrue(productService.updateProduct(42L, mouse, read).isEmpty());
+    }
+
+    @Test
+    void sweepExpired_clearsOnlyExpiredStockOnce() {
+        // Demo data: Pasta expires 2025-04-09, Cake 2025-04-10, Tacos 2025-05-07
+        LocalDate today = LocalDate.of(2025, 4, 10);
+
+        assertEquals(1, productService.sweepExpired(today));
+        assertEquals(0, productService.sweepExpired(today));
+
+        assertEquals(0, productService.getProductById(9L).orElseThrow().getQuantityInStock());
+        assertEquals(2, productService.getProductById(8L).orElseThrow().getQuantityInStock());
+        assertEquals(List.of(ProductChange.Type.STOCK),
+                productService.changeFeed().since(0).stream().map(ProductChange::getType).toList());
+        assertEquals(List.of("Pasta", "Cake"), productService.getProductsExpiringBetween(today.minusDays(1), today)
+                .stream().map(Product::getName).toList());
+        assertThrows(IllegalArgumentException.class, () -> productService.getProductsExpiringBetween(today, today.minusDays(1)));
+    }
+
+    @Test
+    void writes_withDatesSnapshotsCannotHold_areRefusedBeforeStoring() {
+        LocalDate farFuture = LocalDate.of(1_000_000, 1, 1);
+        int size = productService.allProducts().size();
+
+        assertThrows(IllegalArgumentException.class, () -> productService.addProduct(
+                new Product(null, "Forever", "Food", 1, farFuture, 1, null, null)));
+        assertThrows(IllegalArgumentException.class, () -> productService.addProducts(List.of(
+                new Product(null, "Fine", "Food", 1, LocalDate.of(2030, 1, 1), 1, null, null),
+                new Product(null, "Forever", "Food", 1, farFuture, 1, null, null))));
+        assertThrows(IllegalArgumentException.class, () -> productService.replicate(new ProductChange(0, ProductChange.Type.CREATE, 50L,
+                new Product(50L, "Forever", "Food", 1, farFuture, 1, LocalDate.now(), LocalDate.now()))));
+
+        assertEquals(size, productService.allProducts().size());
+        assertTrue(productService.updateProduct(1L, productService.getProductById(1L).orElseThrow().toBuilder()
+                .expirationDate(Product.LATEST_DATE).build()));
+    }
+
+    @Test
+    void sweepExpired_leavesDatedProductsOfOtherCategoriesAlone() {
+        LocalDate today = LocalDate.of(2025, 4, 10);
+        Long batteries = productService.addProduct(
+                new Product(null, "Batteries", "Electronics", 5, today.minusDays(30), 40, null, null)).getId();
+        Long milk = productService.addProduct(
+                new Product(null, "Milk", "FOOD", 1, today.minusDays(1), 6, null, null)).getId();
+
+        assertEquals(2, productService.sweepExpired(today)); // Pasta and Milk
+        assertEquals(40, productService.getProductById(batteries).orElseThrow().getQuantityInStock());
+        assertEquals(0, productService.getProductById(milk).orElseThrow().getQuantityInStock());
+
+        assertEquals(1, productService.sweepExpired(today, List.of("electronics")));
+        assertEquals(0, productService.getProductById(batteries).orElseThrow().getQuantityInStock());
+        assertEquals(0, productService.sweepExpired(today, List.of("Toys")));
+    }
+
+    @Test
+    void adjustStock_concurrentDecrementsNeverOversell() throws Exception {
+        Long id = productService.addProduct(new Product(null, "Counter", "Electronics", 1, null, 1_000, null, null)).getId();
+        AtomicInteger sold = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 150; i++) {
+                        try {
+                            productService.adjustStock(id, -1);
+                            sold.incrementAndGet();
+                        } catch (InsufficientStockException e) {
+                            // sold out
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1_000, sold.get());
+        Product product = productService.getProductById(id).orElseThrow();
+        assertEquals(0, product.getQuantityInStock());
+        assertEquals(1_001, product.getVersion());
+        assertTrue(productService.adjustStock(42L, 1).isEmpty());
+    }
+
+    @Test
+    void adjustStocks_rejectsOnlyWhatWouldGoNegative() {
+        // Demo data: Mouse (1) has 2, Keyboard (3) has 4, Lamp (7) has 0
+        StockAdjustmentResult result = productService.adjustStocks(List.of(
+                new StockAdjustment(1L, -1), new StockAdjustment(3L, -5), new StockAdjustment(7L, 3),
+                new StockAdjustment(1L, -1), new StockAdjustment(42L, 1)));
+
+        assertEquals(2, result.getAdjusted());
+        assertEquals(List.of(42L), result.getNotFound());
+        assertEquals(List.of(3L), result.getRejected());
+        assertEquals(0, productService.getProductById(1L).orElseThrow().getQuantityInStock());
+        assertEquals(4, productService.getProductById(3L).orElseThrow().getQuantityInStock());
+        assertEquals(3, productService.getProductById(7L).orElseThrow().getQuantityInStock());
+        assertEquals(List.of(ProductChange.Type.STOCK, ProductChange.Type.STOCK),
+                productService.changeFeed().since(0).stream().map(ProductChange::getType).toList());
+    }
+
+    @Test
+    void singleFlight_sharesTheResultOfAnIdenticalComputationInFlight() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        SingleFlight<String, Object> flight = new SingleFlight<>(registry.counter("coalesced"));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Object shared = new Object();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Object> first = executor.submit(() -> flight.run("key", () -> {
+                started.countDown();
+                awaitQuietly(release);
+                return shared;
+            }));
+            started.await();
+            Thread releaser = new Thread(() -> {
+                while (registry.counter("coalesced").count() == 0) {
+                    Thread.onSpinWait();
+                }
+                release.countDown();
+            });
+            releaser.start();
+
+            Object second = flight.run("key", () -> fail("identical computation ran twice"));
+
+            assertSame(shared, second);
+            assertSame(shared, first.get(10, TimeUnit.SECONDS));
+            assertNotSame(shared, flight.run("key", Object::new)); // nothing is kept once it completes
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
 
+    @Test
+    void listingAdmission_shedsScansBeyondTheLimit() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ListingAdmission admission = new ListingAdmission(registry, 1, 0, Duration.ZERO);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> admitted = executor.submit(() -> admission.run(() -> {
+                running.countDown();
+                awaitQuietly(release);
+                return "done";
+            }));
+            running.await();
+
+            assertThrows(ListingRejectedException.class, () -> admission.run(() -> "shed"));
+            release.countDown();
+            assertEquals("done", admitted.get(10, TimeUnit.SECONDS));
+            assertEquals("admitted", admission.run(() -> "admitted"));
+            assertEquals(1, registry.get("inventory.listing.scans.rejected").counter().count());
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
 }
@@ -0,0 +1,563 @@
+package com.encora.esteban.inventory.manager.be.store;
+
+import com.encora.esteban.inventory.manager.be.model.Product;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductStoreTest {
+
+    private static final int THREADS = 8;
+    private static final int OPERATIONS_PER_THREAD = 5_000;
+
+    private ProductStore store;
+
+    @BeforeEach
+    void setup() {
+        store = new ProductStore();
+    }
+
+    @Test
+    void load_keepsIdAndAdvancesSequence() {
+        store.load(product(5L, "Seeded", 1));
+
+        Product added = store.add(product(null, "Added", 1));
+
+        assertEquals(6L, added.getId());
+        assertEquals(2, store.size());
+    }
+
+    @Test
+    void version_movesOnEveryWriteButNotOnMisses() {
+        long initial = store.version();
+        Product added = store.add(product(null, "A", 1));
+        store.update(added.getId(), p -> p.toBuilder().quantityInStock(2).build());
+        store.addAll(List.of(product(null, "B", 1), product(null, "C", 1)));
+        long afterWrites = store.version();
+
+        store.update(999L, p -> p);
+        store.remove(999L);
+        store.removeAll(List.of(998L, 999L));
+
+        assertEquals(initial + 3, afterWrites);
+        assertEquals(afterWrites, store.version());
+    }
+
+    @Test
+    void update_unknownId_returnsEmpty() {
+        assertTrue(store.update(42L, p -> p).isEmpty());
+        assertFalse(store.remove(42L));
+    }
+
+    @Test
+    void concurrentAdds_loseNoProductsAndNeverReuseIds() throws Exception {
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+
+        runConcurrently(() -> {
+            for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                ids.add(store.add(product(null, "P" + i, 1)).getId());
+            }
+        });
+
+        assertEquals(THREADS * OPERATIONS_PER_THREAD, store.size());
+        assertEquals(THREADS * OPERATIONS_PER_THREAD, ids.size());
+    }
+
+    @Test
+    void concurrentUpdatesOfSameProduct_loseNoIncrements() throws Exception {
+        Long id = store.add(product(null, "Counter", 0)).getId();
+
+        runConcurrently(() -> {
+            for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                store.update(id, p -> p.toBuilder().quantityInStock(p.getQuantityInStock() + 1).build());
+            }
+        });
+
+        assertEquals(THREADS * OPERATIONS_PER_THREAD, store.get(id).orElseThrow().getQuantityInStock());
+    }
+
+    @Test
+    void readsWhileWriting_neverFail() throws Exception {
+        for (int i = 0; i < 1_000; i++) {
+            store.add(product(null, "Base" + i, 1));
+        }
+
+        runConcurrently(() -> {
+            for (int i = 0; i < OPERATIONS_PER_THREAD / 10; i++) {
+                Product added = store.add(product(null, "Temp" + i, 1));
+                int stock = 0;
+                for (Product p : store.all()) { // would throw ConcurrentModificationException on an ArrayList
+                    stock += p.getQuantityInStock();
+                }
+                assertTrue(stock > 0);
+                assertTrue(store.remove(added.getId()));
+            }
+        });
+
+        assertEquals(1_000, store.size());
+    }
+
+    @Test
+    void totals_followAddsUpdatesAndDeletes() {
+        Product mouse = store.add(product(null, "Mouse", 2)); // 2 x 10.0
+        Product shirt = store.add(new Product(null, "Shirt", "Clothing", 5, null, 4, null, null));
+
+        store.update(mouse.getId(), p -> p.toBuilder().quantityInStock(3).build());
+        store.remove(shirt.getId());
+
+        InventoryTotals totals = store.totals();
+        assertEquals(3, totals.getTotalStock());
+        assertEquals(30.0, totals.getTotalValue(), 1e-9);
+        assertEquals(Map.of("Electronics", 3), totals.getCategoryStock());
+        assertFalse(totals.getCategoryValue().containsKey("Clothing")); // no products left in that category
+        assertTrue(store.verifyTotals());
+    }
+
+    @Test
+    void concurrentMixedWrites_keepTotalsConsistentWithRecompute() throws Exception {
+        String[] categories = {"Electronics", "Clothing", "Food"};
+
+        runConcurrently(() -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                Product added = store.add(new Product(null, "P" + i, categories[i % categories.length],
+                        random.nextDouble(1, 500), null, random.nextInt(0, 50), null, null));
+                if (i % 3 == 0) {
+                    store.update(added.getId(), p -> p.toBuilder()
+                            .quantityInStock(random.nextInt(0, 50))
+                            .category(categories[random.nextInt(categories.length)])
+                            .build());
+                } else if (i % 3 == 1) {
+                    store.remove(added.getId());
+                }
+            }
+        });
+
+        assertTrue(store.verifyTotals());
+    }
+
+    @Test
+    void find_usesCategoryAndStockIndexes() {
+        Product mouse = store.add(product(null, "Mouse", 2));
+        store.add(product(null, "Lamp", 0));
+        store.add(new Product(null, "Socks", "Clothing", 5, null, 4, null, null));
+
+        assertEquals(2, store.find("electronics", null).size()); // case-insensitive, like the old filter
+        assertEquals(List.of(mouse), List.copyOf(store.find("Electronics", true)));
+        assertEquals(1, store.find(null, false).size());
+        assertTrue(store.find("Food", null).isEmpty());
+
+        store.update(mouse.getId(), p -> p.toBuilder().category("Clothing").quantityInStock(0).build());
+
+        assertEquals(1, store.find("Electronics", null).size());
+        assertEquals(2, store.find(null, false).size());
+        assertEquals(2, store.find("Clothing", null).size());
+
+        store.remove(mouse.getId());
+
+        assertEquals(1, store.find("Clothing", null).size());
+        assertEquals(1, store.find(null, false).size());
+    }
+
+    @Test
+    void query_pagesMatchFullSortForEverySortKeyAndOrder() {
+        String[] categories = {"Electronics", "Clothing", "Food"};
+        Random random = new Random(42);
+        for (int i = 0; i < 500; i++) {
+            LocalDate expiration = random.nextBoolean() ? null : LocalDate.of(2030, 1, 1).plusDays(random.nextInt(60));
+            store.add(new Product(null, "Item" + random.nextInt(100), categories[random.nextInt(3)],
+                    random.nextInt(20) + 1, expiration, random.nextInt(4), null, null));
+        }
+        List<ProductQuery> queries = new ArrayList<>();
+        for (ProductSort sort : ProductSort.values()) {
+            for (boolean descending : new boolean[]{false, true}) {
+                queries.add(ProductQuery.builder().sort(sort).descending(descending).build());
+                queries.add(ProductQuery.builder().sort(sort).descending(descending).category("food").build());
+                queries.add(ProductQuery.builder().sort(sort).descending(descending).name("M1").inStock(true).build());
+            }
+        }
+
+        for (ProductQuery query : queries) {
+            List<Product> expected = store.all().stream().filter(query::matches).sorted(query.order()).toList();
+            for (int offset : new int[]{0, 10, 95, expected.size()}) {
+                ProductPage page = store.query(query, offset, 10);
+
+                assertEquals(expected.size(), page.getTotalProducts(), query.toString());
+                assertEquals(expected.subList(Math.min(offset, expected.size()), Math.min(offset + 10, expected.size())),
+                        page.getProducts(), query + " offset " + offset);
+            }
+        }
+    }
+
+    @Test
+    void query_followsUpdatesOfSortKeys() {
+        Product cheap = store.add(product(null, "Cheap", 1));
+        Product pricey = store.add(new Product(null, "Pricey", "Electronics", 99, null, 1, null, null));
+        ProductQuery byPrice = ProductQuery.builder().sort(ProductSort.PRICE).descending(true).build();
+
+        store.update(cheap.getId(), p -> p.toBuilder().unitPrice(100).build());
+
+        List<Product> page = store.query(byPrice, 0, 10).getProducts();
+        assertEquals(List.of(cheap.getId(), pricey.getId()), page.stream().map(Product::getId).toList());
+        assertEquals(100, page.get(0).getUnitPrice());
+
+        store.remove(cheap.getId());
+
+        assertEquals(List.of(pricey), store.query(byPrice, 0, 10).getProducts());
+    }
+
+    @Test
+    void query_cursorPagesCoverListingWithoutShifting() {
+        Random random = new Random(7);
+        for (int i = 0; i < 95; i++) {
+            store.add(new Product(null, "Item" + random.nextInt(30), i % 2 == 0 ? "Food" : "Clothing",
+                    random.nextInt(10) + 1, null, random.nextInt(3), null, null));
+        }
+
+        for (ProductSort sort : ProductSort.values()) {
+            for (ProductQuery base : List.of(
+                    ProductQuery.builder().sort(sort).descending(true).build(),
+                    ProductQuery.builder().sort(sort).category("Food").build())) {
+                List<Product> expected = store.all().stream().filter(base::matches).sorted(base.order()).toList();
+                List<Product> walked = new ArrayList<>();
+                ProductQuery query = base;
+                List<Product> page;
+                do {
+                    page = store.query(query, 0, 10).getProducts();
+                    walked.addAll(page);
+                    if (!page.isEmpty()) {
+                        String cursor = ProductCursor.encode(base, page.get(page.size() - 1));
+                        query = base.withAfter(ProductCursor.decode(cursor, base));
+                    }
+                } while (page.size() == 10);
+
+                assertEquals(expected, walked, base.toString());
+            }
+        }
+    }
+
+    @Test
+    void query_cursorIgnoresProductsAddedBeforeIt() {
+        for (int i = 0; i < 20; i++) {
+            store.add(product(null, String.format("Item%02d", i), 1));
+        }
+        ProductQuery query = ProductQuery.builder().build();
+        List<Product> first = store.query(query, 0, 10).getProducts();
+        String cursor = ProductCursor.encode(query, first.get(9));
+
+        store.add(product(null, "Aardvark", 1)); // sorts before every product already listed
+
+        List<Product> second = store.query(query.withAfter(ProductCursor.decode(cursor, query)), 0, 10).getProducts();
+        assertEquals("Item10", second.get(0).getName());
+        assertEquals(10, second.size());
+    }
+
+    @Test
+    void cursor_rejectsOtherOrderingAndGarbage() {
+        ProductQuery byName = ProductQuery.builder().build();
+        String cursor = ProductCursor.encode(byName, product(1L, "Mouse", 1));
+        ProductQuery byPrice = ProductQuery.builder().sort(ProductSort.PRICE).build();
+
+        assertThrows(IllegalArgumentException.class, () -> ProductCursor.decode(cursor, byPrice));
+        assertThrows(IllegalArgumentException.class, () -> ProductCursor.decode("not a cursor!", byName));
+        assertEquals("Mouse", ProductCursor.decode(cursor, byName).getName());
+    }
+
+    @Test
+    void query_nameIndexMatchesLinearScan() {
+        String[] words = {"Wireless", "Mouse", "Keyboard", "USB", "Cable", "Cotton", "Socks", "Pasta", "Tomato"};
+        Random random = new Random(3);
+        for (int i = 0; i < 400; i++) {
+            store.add(product(null, words[random.nextInt(words.length)] + " " + words[random.nextInt(words.length)], 1));
+        }
+        Product renamed = store.add(product(null, "Old Lamp", 1));
+        store.update(renamed.getId(), p -> p.toBuilder().name("Desk Light").build());
+
+        for (String name : List.of("mouse", "SB C", "ss mo", "to", "lamp", "light", "zzz", "e")) {
+            ProductQuery query = ProductQuery.builder().name(name).build();
+            long expected = store.all().stream()
+                    .filter(p -> p.getName().toLowerCase().contains(name.toLowerCase()))
+                    .count();
+
+            assertEquals(expected, store.query(query, 0, 10).getTotalProducts(), name);
+        }
+    }
+
+    @Test
+    void stream_returnsEveryMatchInOrder() {
+        Random random = new Random(11);
+        for (int i = 0; i < 300; i++) {
+            store.add(new Product(null, "Item" + random.nextInt(50), i % 3 == 0 ? "Food" : "Clothing",
+                    random.nextInt(10) + 1, null, random.nextInt(3), null, null));
+        }
+
+        for (ProductQuery query : List.of(
+                ProductQuery.builder().sort(ProductSort.PRICE).descending(true).build(),
+                ProductQuery.builder().name("m1").sort(ProductSort.STOCK).build(),
+                ProductQuery.builder().name("it").build(),
+                ProductQuery.builder().category("food").inStock(false).build())) {
+            List<Product> expected = store.all().stream().filter(query::matches).sorted(query.order()).toList();
+
+            assertEquals(expected, store.stream(query).toList(), query.toString());
+        }
+    }
+
+    @Test
+    void batchWrites_keepIndexesAndTotalsInStep() {
+        List<Product> batch = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            batch.add(new Product(null, "Batch" + i, i % 2 == 0 ? "Food" : "Clothing", 2, null, 1, null, null));
+        }
+        store.addAll(batch);
+        assertEquals(100, batch.stream().map(Product::getId).distinct().count());
+
+        Map<Long, UnaryOperator<Product>> updaters = new LinkedHashMap<>();
+        for (int i = 0; i < 50; i++) {
+            updaters.put(batch.get(i).getId(), p -> p.toBuilder().quantityInStock(0).build());
+        }
+        updaters.put(999L, p -> p);
+        assertEquals(List.of(999L), store.updateAll(updaters));
+
+        List<Long> missing = store.removeAll(List.of(batch.get(99).getId(), 998L));
+
+        assertEquals(List.of(998L), missing);
+        assertEquals(99, store.size());
+        assertEquals(50, store.find(null, false).size());
+        assertEquals(49, store.totals().getTotalStock());
+        assertEquals(101, store.add(product(null, "After", 1)).getId());
+        assertTrue(store.verifyTotals());
+    }
+
+    @Test
+    void categories_areNormalizedToFirstSpellingAtWriteTime() {
+        Product first = store.add(new Product(null, "A", "Food", 2, null, 3, null, null));
+        Product second = store.add(new Product(null, "B", "FOOD", 1, null, 4, null, null));
+        Product renamed = store.update(first.getId(), p -> p.toBuilder().category("fOOd").build()).orElseThrow();
+
+        assertEquals("Food", second.getCategory());
+        assertSame(first.getCategory(), second.getCategory());
+        assertSame(first.getCategory(), renamed.getCategory());
+        assertEquals(Map.of("Food", 7), store.totals().getCategoryStock());
+        assertEquals(2, store.find("food", null).size());
+        assertEquals(2, store.query(ProductQuery.builder().category("fooD").build(), 0, 10).getTotalProducts());
+        assertTrue(store.find("Toys", null).isEmpty());
+        assertTrue(store.verifyTotals());
+    }
+
+    @Test
+    void deferredIndexes_listingsStayCorrectBeforeDuringAndAfterBuild() throws Exception {
+        store.deferIndexes();
+        Random random = new Random(3);
+        for (long id = 1; id <= 2_000; id++) {
+            store.load(new Product(id, "Item" + random.nextInt(300), random.nextBoolean() ? "Food" : "Toys",
+                    random.nextInt(20) + 1, null, random.nextInt(3), null, null));
+        }
+        assertFalse(store.indexesReady());
+        assertListingsMatchScan();
+
+        // Writers keep going while the indexes are built
+        CompletableFuture<Void> built = store.buildIndexes();
+        for (long id = 1; id <= 2_000; id += 3) {
+            store.update(id, p -> p.toBuilder().name("Renamed" + p.getName()).unitPrice(p.getUnitPrice() + 1).build());
+            store.remove(id + 1);
+        }
+        built.get(10, TimeUnit.SECONDS);
+
+        assertTrue(store.indexesReady());
+        assertListingsMatchScan();
+    }
+
+    @Test
+    void columnarScans_matchObjectPathAcrossWrites() {
+        ProductStore columnar = new ProductStore(true);
+        String[] categories = {"Electronics", "food", "Food", null};
+        Random random = new Random(11);
+        for (int i = 0; i < 3_000; i++) {
+            long id = 1 + random.nextInt(1_000);
+            if (random.nextInt(5) == 0) {
+                store.remove(id);
+                columnar.remove(id);
+            } else {
+                LocalDate expiration = random.nextBoolean() ? null : LocalDate.of(2030, 1, 1).plusDays(random.nextInt(30));
+                Product product = new Product(id, random.nextInt(50) == 0 ? null : "Item" + random.nextInt(200),
+                        categories[random.nextInt(categories.length)], random.nextInt(20), expiration, random.nextInt(3), null, null);
+                store.load(product);
+                columnar.load(product.toBuilder().build());
+            }
+        }
+
+        for (ProductSort sort : ProductSort.values()) {
+            for (boolean descending : new boolean[]{false, true}) {
+                for (ProductQuery query : List.of(
+                        ProductQuery.builder().sort(sort).descending(descending).inStock(true).build(),
+                        ProductQuery.builder().sort(sort).descending(descending).category("FOOD").build(),
+                        ProductQuery.builder().sort(sort).descending(descending).name("m1").inStock(false).build())) {
+                    List<Product> expected = store.all().stream()
+                            .filter(p -> (query.getName() == null || p.getName() != null) && query.matches(p)).sorted(query.order()).toList();
+                    for (int offset : new int[]{0, 7, 100, expected.size()}) {
+                        ProductPage page = columnar.query(query, offset, 10);
+
+                        assertEquals(expected.size(), page.getTotalProducts(), query.toString());
+                        assertEquals(expected.subList(Math.min(offset, expected.size()), Math.min(offset + 10, expected.size())),
+                                page.getProducts(), query + " offset " + offset);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void nameFilter_matchesTheSameNonAsciiNamesWithAndWithoutColumns() {
+        ProductStore columnar = new ProductStore(true);
+        for (String name : List.of("İstanbul Rug", "Istanbul Rug", "istanbul rug", "Straße Sign", "ΣΟΦΟΣ Mug")) {
+            store.add(new Product(null, name, "Home", 3, null, 1, null, null));
+            columnar.add(new Product(null, name, "Home", 3, null, 1, null, null));
+        }
+
+        // Lower-cased, 'İ' becomes "i̇", so "is" is not in it; a char-by-char comparison would match it
+        for (String name : List.of("is", "İ", "i̇s", "SS", "ß", "ος", "σοφοσ", "Rug")) {
+            ProductQuery query = ProductQuery.builder().name(name).build();
+            List<Long> expected = store.query(query, 0, 10).getProducts().stream().map(Product::getId).toList();
+
+            assertEquals(expected, columnar.query(query, 0, 10).getProducts().stream().map(Product::getId).toList(), name);
+            assertEquals(expected.size(), columnar.query(query, 0, 10).getTotalProducts(), name);
+        }
+        assertEquals(2, store.query(ProductQuery.builder().name("is").build(), 0, 10).getTotalProducts());
+    }
+
+    @Test
+    void expiringBetween_followsWritesAndDeletes() {
+        LocalDate day = LocalDate.of(2030, 1, 10);
+        Product milk = store.add(new Product(null, "Milk", "Food", 2, day, 3, null, null));
+        Product bread = store.add(new Product(null, "Bread", "Food", 1, day.minusDays(1), 0, null, null));
+        Product cheese = store.add(new Product(null, "Cheese", "Food", 5, day.plusDays(5), 1, null, null));
+        store.add(product(null, "Mouse", 4));
+
+        assertEquals(List.of(bread, milk), store.expiringBetween(day.minusDays(1), day));
+        assertEquals(List.of(milk.getId()), store.expiredInStock(day.plusDays(1), List.of("food")));
+
+        Product movedCheese = store.update(cheese.getId(), p -> p.toBuilder().expirationDate(day).build()).orElseThrow();
+        store.remove(milk.getId());
+
+        assertEquals(List.of(bread, movedCheese), store.expiringBetween(day.minusDays(1), day));
+        assertEquals(List.of(cheese.getId()), store.expiredInStock(day.plusDays(1), List.of("food")));
+        assertTrue(store.expiringBetween(day.plusDays(1), day.plusDays(30)).isEmpty());
+    }
+
+    @Test
+    void update_returningCurrentProduct_writesNothing() {
+        Product added = store.add(product(null, "A", 1));
+        long catalogVersion = store.version();
+
+        Product unchanged = store.update(added.getId(), p -> p).orElseThrow();
+        List<Long> missing = store.updateAll(Map.of(added.getId(), p -> p));
+
+        assertSame(added, unchanged);
+        assertEquals(1, unchanged.getVersion());
+        assertTrue(missing.isEmpty());
+        assertEquals(catalogVersion, store.version());
+    }
+
+    @Test
+    void updates_intoNewCategory_registerItOutsideTheWriteAndApplyOnce() {
+        Product first = store.add(product(null, "A", 1));
+        Product second = store.add(product(null, "B", 2));
+        List<ProductChange> changes = new ArrayList<>();
+        store.setChangeListener(changes::add);
+
+        Product moved = store.update(first.getId(), p -> p.toBuilder().category("Garden").build()).orElseThrow();
+        store.updateAll(Map.of(second.getId(), p -> p.toBuilder().category("Books").build()));
+
+        assertEquals(2, moved.getVersion());
+        assertEquals(2, store.get(second.getId()).orElseThrow().getVersion());
+        assertEquals(2, changes.size());
+        assertEquals(Map.of("Garden", 1, "Books", 2), store.totals().getCategoryStock());
+        assertEquals(1, store.find("books", null).size());
+        assertTrue(store.verifyTotals());
+    }
+
+    @Test
+    void parallelScan_matchesSequentialScan() {
+        ProductStore parallel = new ProductStore(false, 0);
+        Random random = new Random(5);
+        for (int i = 0; i < 20_000; i++) {
+            Product product = new Product(null, "Item" + random.nextInt(5_000), "Electronics", random.nextInt(1_000), null,
+                    random.nextInt(3), null, null);
+            store.add(product);
+            parallel.load(product.toBuilder().build());
+        }
+
+        for (ProductSort sort : ProductSort.values()) {
+            ProductQuery query = ProductQuery.builder().sort(sort).descending(true).name("m1").build();
+            List<Product> expected = store.all().stream().filter(query::matches).sorted(query.order()).toList();
+            for (int offset : new int[]{0, 100, expected.size() - 5}) {
+                ProductPage sequentialPage = store.query(query, offset, 10);
+                ProductPage parallelPage = parallel.query(query, offset, 10);
+
+                assertEquals(expected.size(), parallelPage.getTotalProducts(), query.toString());
+                assertEquals(sequentialPage.getProducts(), parallelPage.getProducts(), query + " offset " + offset);
+                assertEquals(expected.subList(offset, Math.min(offset + 10, expected.size())), parallelPage.getProducts());
+            }
+            Product cursor = expected.get(30);
+            assertEquals(expected.subList(31, 41), parallel.query(query.withAfter(cursor), 0, 10).getProducts());
+        }
+    }
+
+    private void assertListingsMatchScan() {
+        for (ProductSort sort : ProductSort.values()) {
+            for (ProductQuery query : List.of(
+                    ProductQuery.builder().sort(sort).build(),
+                    ProductQuery.builder().sort(sort).descending(true).name("item1").build())) {
+                List<Product> expected = store.all().stream().filter(query::matches).sorted(query.order()).toList();
+                ProductPage page = store.query(query, 20, 10);
+
+                assertEquals(expected.size(), page.getTotalProducts(), query.toString());
+                assertEquals(expected.subList(20, 30), page.getProducts(), query.toString());
+                assertEquals(expected, store.stream(query).toList(), query.toString());
+            }
+        }
+    }
+
+    private void runConcurrently(Runnable task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    task.run();
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS); // rethrows any assertion failure from a worker
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Product product(Long id, String name, int stock) {
+        return new Product(id, name, "Electronics", 10, null, stock, LocalDate.now(), LocalDate.now());
+    }
+}